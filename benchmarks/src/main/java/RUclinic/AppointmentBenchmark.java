@@ -0,0 +1,53 @@
+package ruclinic;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the rendering of one appointment row as printed by PA, PP and PL:
+ * as a new string, and appended to a reused buffer as the scheduler prints
+ * rows. Run with -prof gc to compare the allocation per row.
+ *
+ * @author Paldeep Sekhon
+ * @author Aditya Ponni
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AppointmentBenchmark {
+    private Appointment[] appointments;
+    private int next;
+    private final StringBuilder buffer = new StringBuilder(256);
+
+    @Setup
+    public void setUp() {
+        appointments = new Appointment[1024];
+        for (int i = 0; i < appointments.length; i++) {
+            appointments[i] = Books.appointment(i * 37);
+        }
+    }
+
+    @Benchmark
+    public String appointmentToString() {
+        return appointments[next++ & 1023].toString();
+    }
+
+    @Benchmark
+    public int appointmentAppendTo() {
+        buffer.setLength(0);
+        return appointments[next++ & 1023].appendTo(buffer).length();
+    }
+}
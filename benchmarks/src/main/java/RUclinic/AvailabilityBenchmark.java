@@ -0,0 +1,70 @@
+package ruclinic;
+
+import java.time.Clock;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the search for the next open timeslots over the six month horizon,
+ * with one provider booked solid so its search walks every bookable date.
+ *
+ * @author Paldeep Sekhon
+ * @author Aditya Ponni
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AvailabilityBenchmark {
+    @Param({ "1000", "100000" })
+    private int size;
+
+    private List list;
+    private DatePolicy policy;
+    private Provider[] all;
+    private Provider[] full;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        list = Books.list(size);
+        policy = new DatePolicy(Clock.systemDefaultZone());
+        Date last = policy.horizonEnd();
+        for (Date date = policy.today().plusDays(1); date.compareTo(last) <= 0; date = date.plusDays(1)) {
+            for (Timeslot timeslot : Timeslot.values()) {
+                list.add(new Appointment(date, timeslot, Books.patient(0), Provider.PATEL));
+            }
+        }
+        all = Provider.values();
+        full = new Provider[] { Provider.PATEL };
+    }
+
+    /**
+     * Finds the next ten open timeslots of any provider.
+     */
+    @Benchmark
+    public Opening[] anyProvider() {
+        return Availability.earliest(list, policy, all, policy.today(), 10);
+    }
+
+    /**
+     * Searches the whole horizon for a provider who has no open timeslot.
+     */
+    @Benchmark
+    public Opening[] fullProvider() {
+        return Availability.earliest(list, policy, full, policy.today(), 10);
+    }
+}
@@ -0,0 +1,97 @@
+package ruclinic;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+
+/**
+ * Builds synthetic appointment books for the benchmarks.
+ * Appointment i falls on day i / 48 after 1/1/2000, with the 8 providers and
+ * 6 timeslots of each day filled in turn, so no two appointments conflict.
+ * The patients repeat every PATIENTS appointments.
+ *
+ * @author Paldeep Sekhon
+ * @author Aditya Ponni
+ */
+final class Books {
+    static final int PATIENTS = 4096;
+    private static final long FIRST_DAY = LocalDate.of(2000, 1, 1).toEpochDay();
+    private static final int SLOTS_PER_DAY = Provider.values().length * Timeslot.values().length;
+
+    private Books() {
+    }
+
+    /**
+     * Builds the i-th synthetic appointment.
+     *
+     * @param i The number of the appointment.
+     * @return A new appointment.
+     */
+    static Appointment appointment(int i) {
+        Date date = date(LocalDate.ofEpochDay(FIRST_DAY + i / SLOTS_PER_DAY));
+        Timeslot timeslot = Timeslot.values()[i / Provider.values().length % Timeslot.values().length];
+        Provider provider = Provider.values()[i % Provider.values().length];
+        return new Appointment(date, timeslot, patient(i % PATIENTS), provider);
+    }
+
+    /**
+     * Builds the profile of the i-th synthetic patient.
+     *
+     * @param i The number of the patient.
+     * @return A new profile.
+     */
+    static Profile patient(int i) {
+        return new Profile("First" + i, "Last" + i % 97, new Date(1950 + i % 50, 1 + i % 12, 1 + i % 28));
+    }
+
+    /**
+     * Builds a list holding the first size synthetic appointments.
+     *
+     * @param size The number of appointments.
+     * @return A new list.
+     */
+    static List list(int size) {
+        List list = new List();
+        for (int i = 0; i < size; i++) {
+            list.add(appointment(i));
+        }
+        return list;
+    }
+
+    /**
+     * Builds a packed list holding the first size synthetic appointments.
+     *
+     * @param size The number of appointments.
+     * @return A new packed list.
+     */
+    static PackedList packedList(int size) {
+        PackedList list = new PackedList();
+        for (int i = 0; i < size; i++) {
+            list.add(appointment(i));
+        }
+        return list;
+    }
+
+    /**
+     * Gets a weekday a week or two from today as M/D/YYYY, which the scheduler
+     * accepts as an appointment date and which the synthetic books never use.
+     *
+     * @return The command text of the date.
+     */
+    static String bookableDate() {
+        LocalDate day = LocalDate.now().plusWeeks(1);
+        while (day.getDayOfWeek() == DayOfWeek.SATURDAY || day.getDayOfWeek() == DayOfWeek.SUNDAY) {
+            day = day.plusDays(1);
+        }
+        return day.getMonthValue() + "/" + day.getDayOfMonth() + "/" + day.getYear();
+    }
+
+    /**
+     * Converts a java.time date to a clinic date.
+     *
+     * @param day The date to convert.
+     * @return The clinic date.
+     */
+    private static Date date(LocalDate day) {
+        return new Date(day.getYear(), day.getMonthValue(), day.getDayOfMonth());
+    }
+}
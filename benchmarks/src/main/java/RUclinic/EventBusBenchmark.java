@@ -0,0 +1,96 @@
+package ruclinic;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Control;
+
+/**
+ * Measures events per second through the event bus, with two publishing
+ * threads and three consumers reading at their own pace. The publish score is
+ * the number of events published; under DROP the consumers' scores show how
+ * many of them they kept up with.
+ * Under BLOCK a publisher only waits a little at a time and gives up once the
+ * iteration ends, since the consumers stop reading then but stay subscribed
+ * until the iteration is torn down.
+ *
+ * @author Paldeep Sekhon
+ * @author Aditya Ponni
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventBusBenchmark {
+    @Param({ "BLOCK", "DROP" })
+    private EventBus.Policy policy;
+
+    @Param({ "1024", "16384" })
+    private int capacity;
+
+    private static final long WAIT_MICROS = 100; // how long a publisher waits for room before checking the iteration
+
+    private EventBus bus;
+    private Appointment appointment;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        bus = new EventBus(capacity, policy);
+        appointment = Books.appointment(0);
+    }
+
+    @Benchmark
+    @Group("bus")
+    @GroupThreads(2)
+    public boolean publish(Control control) throws InterruptedException {
+        while (!control.stopMeasurement) {
+            if (bus.tryPublish(BookingEvent.Kind.BOOK, appointment, null, WAIT_MICROS, TimeUnit.MICROSECONDS)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Benchmark
+    @Group("bus")
+    @GroupThreads(3)
+    public boolean consume(Reader reader) {
+        return reader.subscription.poll(reader.event);
+    }
+
+    /**
+     * Holds the subscription of one consumer thread and the event it reads
+     * into.
+     */
+    @State(Scope.Thread)
+    public static class Reader {
+        private EventBus.Subscription subscription;
+        private final BookingEvent event = new BookingEvent();
+
+        @Setup(Level.Iteration)
+        public void setUp(EventBusBenchmark benchmark) {
+            subscription = benchmark.bus.subscribe();
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() {
+            subscription.close();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package ruclinic;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures importing a batch of appointments into an empty list, booking them
+ * one at a time against booking them as one batch with bookAll.
+ *
+ * @author Paldeep Sekhon
+ * @author Aditya Ponni
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImportBenchmark {
+    @Param({ "1000", "10000", "100000" })
+    private int size;
+
+    private Appointment[] batch;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        batch = new Appointment[size];
+        for (int i = 0; i < size; i++) {
+            batch[i] = Books.appointment(i);
+        }
+    }
+
+    @Benchmark
+    public List bookOneAtATime() {
+        List list = new List();
+        for (Appointment appointment : batch) {
+            list.book(appointment);
+        }
+        return list;
+    }
+
+    @Benchmark
+    public BookingResult[] bookAll() {
+        return new List().bookAll(batch);
+    }
+}
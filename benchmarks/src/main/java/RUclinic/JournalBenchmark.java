@@ -0,0 +1,97 @@
+package ruclinic;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures sustained bookings per second on a journaled booking service, with
+ * every booking and cancellation synced to disk before it returns. The threads
+ * share the journal, so the score shows how many changes each group commit
+ * carries. Run with -t to change the number of booking threads.
+ *
+ * @author Paldeep Sekhon
+ * @author Aditya Ponni
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+public class JournalBenchmark {
+    private Path path;
+    private Journal journal;
+    private BookingService service;
+    private final AtomicInteger clients = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        path = Files.createTempFile("journal", ".log");
+        journal = new Journal(path);
+        service = new BookingService(journal);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        journal.close();
+        Files.delete(path);
+    }
+
+    /**
+     * Books an appointment and cancels it again, two durable changes per call.
+     * Each thread books for its own patient, spread over the days and
+     * providers of the synthetic book.
+     */
+    @Benchmark
+    public BookingResult bookThenCancel(Client client) {
+        Appointment appointment = client.next();
+        BookingResult result = service.book(appointment);
+        service.cancel(appointment.getDate(), appointment.getTimeslot(), appointment.getPatient());
+        return result;
+    }
+
+    /**
+     * Holds the patient of one booking thread and the appointment it books
+     * next.
+     */
+    @State(Scope.Thread)
+    public static class Client {
+        private Profile patient;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp(JournalBenchmark benchmark) {
+            int number = benchmark.clients.getAndIncrement();
+            patient = Books.patient(number);
+            next = number * 65536; // each thread starts on its own days
+        }
+
+        /**
+         * Builds the next appointment of this thread's patient.
+         *
+         * @return A new appointment.
+         */
+        Appointment next() {
+            Appointment template = Books.appointment(next++ & 0xFFFFF);
+            return new Appointment(template.getDate(), template.getTimeslot(), patient, template.getProvider());
+        }
+    }
+}
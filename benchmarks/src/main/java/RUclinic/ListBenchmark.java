@@ -0,0 +1,145 @@
+package ruclinic;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the appointment list operations behind every command: add, contains
+ * and remove, and the three orderings used by PA, PP and PL.
+ *
+ * @author Paldeep Sekhon
+ * @author Aditya Ponni
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ListBenchmark {
+    @Param({ "1000", "10000", "100000", "1000000" })
+    private int size;
+
+    private List list;
+    private Appointment[] present; // appointments in the list, probed in turn
+    private Appointment[] absent; // appointments never in the list
+    private int next;
+    private RangeQuery twoDays; // every appointment on two days in the middle of the book
+    private RangeQuery providerWeek; // one provider's appointments in a week in the middle of the book
+    private RangeQuery onePatient; // every appointment of one patient, size / PATIENTS of them
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        list = Books.list(size);
+        present = new Appointment[1024];
+        absent = new Appointment[1024];
+        for (int i = 0; i < present.length; i++) {
+            present[i] = list.get((int) ((long) i * size / present.length));
+            absent[i] = Books.appointment(size + i);
+        }
+        Date middle = list.get(size / 2).getDate();
+        twoDays = new RangeQuery(middle, middle.plusDays(1), null, null, null, null);
+        providerWeek = new RangeQuery(middle, middle.plusDays(6), Provider.PATEL, null, null, null);
+        onePatient = new RangeQuery(list.get(0).getDate(), list.get(size - 1).getDate(), null, null, null,
+                Books.patient(7));
+    }
+
+    @Benchmark
+    public boolean containsHit() {
+        return list.contains(present[next++ & 1023]);
+    }
+
+    @Benchmark
+    public boolean containsMiss() {
+        return list.contains(absent[next++ & 1023]);
+    }
+
+    /**
+     * Adds an appointment and removes it again, keeping the list at its size.
+     */
+    @Benchmark
+    public void addThenRemove() {
+        Appointment appointment = absent[next++ & 1023];
+        list.add(appointment);
+        list.remove(appointment);
+    }
+
+    /**
+     * Removes an appointment from the list and adds it back at the end.
+     */
+    @Benchmark
+    public void removeThenAdd() {
+        Appointment appointment = present[next++ & 1023];
+        list.remove(appointment);
+        list.add(appointment);
+    }
+
+    @Benchmark
+    public void sortByAppointment(Blackhole blackhole) {
+        list.sortByAppointment();
+        blackhole.consume(list.get(0));
+    }
+
+    @Benchmark
+    public void sortByPatient(Blackhole blackhole) {
+        list.sortByPatient();
+        blackhole.consume(list.get(0));
+    }
+
+    @Benchmark
+    public void sortByLocation(Blackhole blackhole) {
+        list.sortByLocation();
+        blackhole.consume(list.get(0));
+    }
+
+    /**
+     * Lists the appointments on two days, walking only that range of the
+     * date view.
+     */
+    @Benchmark
+    public void rangeTwoDays(Blackhole blackhole) {
+        for (Appointment appointment : list.range(twoDays)) {
+            blackhole.consume(appointment);
+        }
+    }
+
+    /**
+     * Lists one provider's appointments in a week, walking that range of the
+     * county view.
+     */
+    @Benchmark
+    public void rangeProviderWeek(Blackhole blackhole) {
+        for (Appointment appointment : list.range(providerWeek)) {
+            blackhole.consume(appointment);
+        }
+    }
+
+    @Benchmark
+    public void rangeOnePatient(Blackhole blackhole) {
+        for (Appointment appointment : list.range(onePatient)) {
+            blackhole.consume(appointment);
+        }
+    }
+
+    /**
+     * Cancels every appointment of one patient, as CP does, and books them
+     * again, keeping the list at its size.
+     */
+    @Benchmark
+    public BookingResult[] cancelAllThenRebook() {
+        return list.bookAll(list.cancelAll(onePatient));
+    }
+}
@@ -0,0 +1,43 @@
+package ruclinic;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures what recording a command adds to the scheduler's hot path: one
+ * histogram bucket and one outcome counter, with threads sharing the same
+ * statistics as server clients do.
+ *
+ * @author Paldeep Sekhon
+ * @author Aditya Ponni
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricsBenchmark {
+    private final CommandStats stats = new CommandStats("S");
+
+    @Benchmark
+    public void recordOneThread() {
+        stats.record(Outcome.OK, System.nanoTime() & 0xFFFFF);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void recordEightThreads() {
+        stats.record(Outcome.OK, System.nanoTime() & 0xFFFFF);
+    }
+}
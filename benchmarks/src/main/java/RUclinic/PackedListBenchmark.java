@@ -0,0 +1,95 @@
+package ruclinic;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the packed appointment list against the same workloads as
+ * ListBenchmark, and the time to build a whole book with either list.
+ *
+ * @author Paldeep Sekhon
+ * @author Aditya Ponni
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PackedListBenchmark {
+    @Param({ "1000", "10000", "100000", "1000000" })
+    private int size;
+
+    private PackedList list;
+    private Appointment[] present; // appointments in the list, probed in turn
+    private Appointment[] absent; // appointments never in the list
+    private int next;
+
+    @Setup
+    public void setUp() {
+        list = Books.packedList(size);
+        present = new Appointment[1024];
+        absent = new Appointment[1024];
+        for (int i = 0; i < present.length; i++) {
+            present[i] = list.get((int) ((long) i * size / present.length));
+            absent[i] = Books.appointment(size + i);
+        }
+    }
+
+    @Benchmark
+    public boolean containsHit() {
+        return list.contains(present[next++ & 1023]);
+    }
+
+    @Benchmark
+    public boolean containsMiss() {
+        return list.contains(absent[next++ & 1023]);
+    }
+
+    /**
+     * Adds an appointment and removes it again, keeping the list at its size.
+     */
+    @Benchmark
+    public void addThenRemove() {
+        Appointment appointment = absent[next++ & 1023];
+        list.add(appointment);
+        list.remove(appointment);
+    }
+
+    @Benchmark
+    public Appointment get() {
+        return list.get((next++ & Integer.MAX_VALUE) % size);
+    }
+
+    /**
+     * Builds a whole packed book.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public PackedList buildPackedList() {
+        return Books.packedList(size);
+    }
+
+    /**
+     * Builds a whole book of appointment objects, for comparison with
+     * buildPackedList.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List buildList() {
+        return Books.list(size);
+    }
+}
@@ -0,0 +1,59 @@
+package ruclinic;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the revenue rollup over a whole book, totaled in one thread and in
+ * parallel on the fork-join pool. Run with
+ * -Djava.util.concurrent.ForkJoinPool.common.parallelism=N to vary the cores
+ * used.
+ *
+ * @author Paldeep Sekhon
+ * @author Aditya Ponni
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RevenueBenchmark {
+    @Param({ "100000", "1000000" })
+    private int size;
+
+    private List list;
+    private Date first;
+    private Date last;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        list = Books.list(size);
+        first = Books.appointment(0).getDate();
+        last = Books.appointment(size - 1).getDate();
+    }
+
+    @Benchmark
+    public long[] sequential() {
+        long[] totals = new long[Provider.values().length];
+        list.addRevenue(first.toEpochDay(), last.toEpochDay(), totals);
+        return totals;
+    }
+
+    @Benchmark
+    public long[] parallel() {
+        return list.revenueByProvider(first, last);
+    }
+}
@@ -0,0 +1,88 @@
+package ruclinic;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures whole scheduler commands against a book of the given size, with
+ * the results written to a discarding stream. S, C and R run on a bookable
+ * date that the synthetic book never uses, so every command succeeds.
+ *
+ * @author Paldeep Sekhon
+ * @author Aditya Ponni
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SchedulerBenchmark {
+    @Param({ "1000", "10000", "100000", "1000000" })
+    private int size;
+
+    private List list;
+    private Scheduler scheduler;
+    private String schedule;
+    private String cancel;
+    private String rescheduleForward;
+    private String rescheduleBack;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        list = Books.list(size);
+        scheduler = new Scheduler(list, new PrintStream(OutputStream.nullOutputStream()));
+        String date = Books.bookableDate();
+        schedule = "S," + date + ",1,Bench,Mark,1/1/1990,PATEL";
+        cancel = "C," + date + ",1,Bench,Mark,1/1/1990,PATEL";
+        rescheduleForward = "R," + date + ",3,Bench,Mark,1/1/1990,4";
+        rescheduleBack = "R," + date + ",4,Bench,Mark,1/1/1990,3";
+        scheduler.execute("S," + date + ",3,Bench,Mark,1/1/1990,LIM");
+    }
+
+    /**
+     * Books an appointment and cancels it again, keeping the book at its size.
+     */
+    @Benchmark
+    public void scheduleThenCancel() {
+        scheduler.execute(schedule);
+        scheduler.execute(cancel);
+    }
+
+    /**
+     * Moves an appointment to another timeslot and back.
+     */
+    @Benchmark
+    public void rescheduleTwice() {
+        scheduler.execute(rescheduleForward);
+        scheduler.execute(rescheduleBack);
+    }
+
+    @Benchmark
+    public boolean printByAppointment() {
+        return scheduler.execute("PA");
+    }
+
+    /**
+     * Prints the billing statements. PS leaves the book as it is, so the same
+     * scheduler is used for every call.
+     */
+    @Benchmark
+    public boolean printBillingStatements() {
+        return scheduler.execute("PS");
+    }
+}
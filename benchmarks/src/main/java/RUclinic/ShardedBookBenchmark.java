@@ -0,0 +1,105 @@
+package ruclinic;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures bookings per second from many threads on the lock-striped booking
+ * service and on the book with one worker thread per location, and the cost of
+ * merging the shards for the PA listing. Run with -t to change the number of
+ * booking threads.
+ *
+ * @author Paldeep Sekhon
+ * @author Aditya Ponni
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class ShardedBookBenchmark {
+    private static final int SIZE = 100000;
+
+    @Param({ "striped", "sharded" })
+    private String kind;
+
+    private AppointmentBook book;
+    private final AtomicInteger clients = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        book = kind.equals("sharded") ? new ShardedBook() : new BookingService();
+        for (int i = 0; i < SIZE; i++) {
+            book.book(Books.appointment(i));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (book instanceof ShardedBook) {
+            ((ShardedBook) book).close();
+        }
+    }
+
+    /**
+     * Each thread books for its own patient, spread over the days and
+     * providers of the synthetic book, and cancels the booking again.
+     */
+    @Benchmark
+    public BookingResult bookThenCancel(Client client) {
+        Appointment appointment = client.next();
+        BookingResult result = book.book(appointment);
+        book.cancel(appointment.getDate(), appointment.getTimeslot(), appointment.getPatient());
+        return result;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Iterable<Appointment> byAppointment() {
+        return book.byAppointment();
+    }
+
+    /**
+     * Holds the patient of one booking thread and the appointment it books
+     * next.
+     */
+    @State(Scope.Thread)
+    public static class Client {
+        private Profile patient;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp(ShardedBookBenchmark benchmark) {
+            int number = benchmark.clients.getAndIncrement();
+            patient = Books.patient(Books.PATIENTS + number); // a patient the synthetic book does not have
+            next = SIZE + number * 65536; // each thread starts on its own days, after the book
+        }
+
+        /**
+         * Builds the next appointment of this thread's patient.
+         *
+         * @return A new appointment.
+         */
+        Appointment next() {
+            Appointment template = Books.appointment(next++);
+            return new Appointment(template.getDate(), template.getTimeslot(), patient, template.getProvider());
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package ruclinic;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures reading the fields of an S command line: both dates, the
+ * timeslot and the provider, as the scheduler does before booking.
+ *
+ * @author Paldeep Sekhon
+ * @author Aditya Ponni
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenizerBenchmark {
+    private final Tokenizer tokens = new Tokenizer();
+    private final String line = "S,12/11/2026,4,Jane,Doe,5/1/1996,zimnes";
+
+    @Benchmark
+    public void parseSchedule(Blackhole blackhole) {
+        blackhole.consume(tokens.reset(line));
+        blackhole.consume(tokens.date(1));
+        blackhole.consume(tokens.timeslot(2));
+        blackhole.consume(tokens.date(5));
+        blackhole.consume(tokens.provider(6));
+    }
+}
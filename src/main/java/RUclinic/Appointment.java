@@ -1,17 +1,18 @@
 package ruclinic;
 
 /**
- * Represents an appointment in the clinic.
+ * Represents an appointment in the clinic. An appointment never changes once
+ * it is created; a reschedule replaces it with a new one.
  * 
  * @author Paldeep Sekhon
  * @author Aditya Ponni
  */
 
 public class Appointment implements Comparable<Appointment> {
-    private Date date;
-    private Timeslot timeslot;
-    private Profile patient;
-    private Provider provider;
+    private final Date date;
+    private final Timeslot timeslot;
+    private final Profile patient;
+    private final Provider provider;
 
     /**
      * Constructs an Appointment with the specified date, timeslot, patient, and
@@ -51,6 +52,41 @@ public class Appointment implements Comparable<Appointment> {
                 provider.equals(that.provider); // Compare the provider as well
     }
 
+    /**
+     * Returns a hash code for the appointment built from its date, timeslot, and
+     * patient. The provider is left out so an appointment can be looked up by
+     * patient and time alone.
+     *
+     * @return the hash code of this appointment
+     */
+    @Override
+    public int hashCode() {
+        return hash(date, timeslot, patient);
+    }
+
+    /**
+     * Computes the hash code an appointment with the given date, timeslot, and
+     * patient would have.
+     *
+     * @param date     the date of the appointment
+     * @param timeslot the timeslot of the appointment
+     * @param patient  the patient's profile for the appointment
+     * @return the hash code of such an appointment
+     */
+    static int hash(Date date, Timeslot timeslot, Profile patient) {
+        return (date.hashCode() * 31 + timeslot.ordinal()) * 31 + patient.hashCode();
+    }
+
+    /**
+     * Gets the packed date, timeslot, and provider key of the appointment.
+     * Keys order appointments by date, then timeslot, then provider name.
+     *
+     * @return the packed key of this appointment
+     */
+    public long key() {
+        return date.key(timeslot, provider);
+    }
+
     /**
      * Compares this appointment to another appointment to determine their ordering.
      * Appointments are ordered first by date, then by timeslot, and finally by
@@ -86,18 +122,38 @@ public class Appointment implements Comparable<Appointment> {
      */
     @Override
     public String toString() {
-        return String.format("%s %s %s %s %s [%s, %s, %s %s, %s]",
-                this.date, // Appointment date
-                this.timeslot, // Timeslot
-                this.patient.getFname(), // Patient's first name
-                this.patient.getLname(), // Patient's last name
-                this.patient.getDob(), // Patient's date of birth
-                this.provider.name(), // Provider's name
-                this.provider.getLocation().getCity(), // Provider's location city
-                this.provider.getLocation().getCounty(), // Provider's location county
-                this.provider.getLocation().getZip(), // Provider's location ZIP code
-                this.provider.getSpecialty().getNameOnly() // Provider's specialty (without price)
-        );
+        return appendTo(new StringBuilder(96)).toString();
+    }
+
+    /**
+     * Appends the appointment to a buffer in the format of toString. Every part
+     * is text cached by the date, timeslot and provider, so nothing is
+     * formatted or allocated when the buffer has room.
+     *
+     * @param buffer the buffer to append to
+     * @return the buffer
+     */
+    public StringBuilder appendTo(StringBuilder buffer) {
+        return appendTo(buffer, this.date, this.timeslot, this.patient, this.provider);
+    }
+
+    /**
+     * Appends an appointment given by its parts to a buffer in the format of
+     * toString, without building the appointment.
+     *
+     * @param buffer   the buffer to append to
+     * @param date     the date of the appointment
+     * @param timeslot the timeslot of the appointment
+     * @param patient  the profile of the patient
+     * @param provider the provider of the appointment
+     * @return the buffer
+     */
+    static StringBuilder appendTo(StringBuilder buffer, Date date, Timeslot timeslot, Profile patient,
+            Provider provider) {
+        date.appendTo(buffer).append(' ') // Appointment date
+                .append(timeslot.toString()).append(' '); // Timeslot
+        patient.appendTo(buffer).append(' '); // Patient's name and date of birth
+        return buffer.append(provider.getLabel()); // Provider's name, location and specialty (without price)
     }
 
     /**
@@ -135,24 +191,4 @@ public class Appointment implements Comparable<Appointment> {
     public Provider getProvider() {
         return provider;
     }
-
-    /**
-     * Sets the timeslot of the appointment, allowing the appointment to be
-     * rescheduled.
-     *
-     * @param timeslot the new timeslot for the appointment
-     */
-    public void setTimeSlot(Timeslot timeslot) {
-        this.timeslot = timeslot;
-    }
-
-    /**
-     * Sets the provider of the appointment, allowing the provider to be updated if
-     * necessary.
-     *
-     * @param provider the new provider for the appointment
-     */
-    public void setProvider(Provider provider) {
-        this.provider = provider;
-    }
 }
@@ -0,0 +1,158 @@
+package ruclinic;
+
+/**
+ * The AppointmentBook interface is the set of operations the Scheduler needs
+ * from the appointments it manages. Each change is a single call that checks
+ * and updates the book together, so an implementation shared by several
+ * schedulers can make every change atomic.
+ * 
+ * @author Paldeep Sekhon
+ * @author Aditya Ponni
+ */
+public interface AppointmentBook {
+
+    /**
+     * Books an appointment if the patient does not already have it and the
+     * provider is free at its timeslot.
+     * 
+     * @param appointment The appointment to book.
+     * @return BOOKED if the appointment was added, DUPLICATE if the book already
+     *         has it, or UNAVAILABLE if the provider is taken at the timeslot.
+     */
+    BookingResult book(Appointment appointment);
+
+    /**
+     * Books a batch of appointments as one change. Each appointment is checked
+     * against the book and against the appointments before it in the batch, and
+     * the ones that pass are added together.
+     * 
+     * @param batch The appointments to book.
+     * @return The result of each appointment, at the same position as in the
+     *         batch.
+     */
+    BookingResult[] bookAll(Appointment[] batch);
+
+    /**
+     * Finds the appointment a patient has at a timeslot on the given date,
+     * regardless of the provider.
+     * 
+     * @param date     The date of the appointment.
+     * @param timeslot The timeslot of the appointment.
+     * @param patient  The profile of the patient.
+     * @return The appointment if found, or null if not found.
+     */
+    Appointment find(Date date, Timeslot timeslot, Profile patient);
+
+    /**
+     * Cancels the appointment a patient has at a timeslot on the given date.
+     * 
+     * @param date     The date of the appointment.
+     * @param timeslot The timeslot of the appointment.
+     * @param patient  The profile of the patient.
+     * @return The canceled appointment, or null if there was none.
+     */
+    Appointment cancel(Date date, Timeslot timeslot, Profile patient);
+
+    /**
+     * Cancels every appointment that matches a range query, such as all the
+     * coming appointments of a patient.
+     * 
+     * @param query The dates and conditions of the appointments to cancel.
+     * @return The canceled appointments in date/timeslot/provider order.
+     */
+    Appointment[] cancelAll(RangeQuery query);
+
+    /**
+     * Removes every appointment dated before a day, once those days are over.
+     * The appointments have taken place rather than being canceled, so they
+     * are not published as cancellations, and a journaled book logs them as
+     * retired so they can be recovered as visits.
+     * 
+     * @param day The first day to keep.
+     * @return The removed appointments in date/timeslot/provider order.
+     */
+    Appointment[] retire(Date day);
+
+    /**
+     * Moves an appointment in the book to a new timeslot on the same date if
+     * its provider is free then. The appointment object is not changed; the
+     * book holds a new appointment at the new timeslot instead.
+     * 
+     * @param appointment The appointment to reschedule.
+     * @param timeslot    The new timeslot for the appointment.
+     * @return BOOKED if the appointment was moved, UNAVAILABLE if the provider
+     *         is taken at the new timeslot, or NOT_FOUND if the appointment is
+     *         no longer in the book.
+     */
+    BookingResult reschedule(Appointment appointment, Timeslot timeslot);
+
+    /**
+     * Gets the timeslots a provider has booked on a date as a bit mask, with bit
+     * i set when the timeslot with ordinal i is taken.
+     * 
+     * @param provider The provider to check.
+     * @param date     The date to check.
+     * @return The bit mask of booked timeslots.
+     */
+    int bookedSlots(Provider provider, Date date);
+
+    /**
+     * Publishes every booking, cancellation and reschedule made from now on to
+     * an event bus. Each change is published as part of the change itself, so
+     * two changes to the same provider/day pair are published in the order they
+     * were made. A change never waits for room in the bus: under the BLOCK
+     * policy, a change the full ring has no room for is counted as missed by
+     * the bus instead.
+     * 
+     * @param events The bus to publish to, or null to stop publishing.
+     */
+    void publishTo(EventBus events);
+
+    /**
+     * Gets the number of appointments in the book.
+     * 
+     * @return The number of appointments in the book.
+     */
+    int size();
+
+    /**
+     * Totals the charges of the appointments on the dates in a range, by
+     * provider.
+     * 
+     * @param first The first date of the range.
+     * @param last  The last date of the range, inclusive.
+     * @return The totals in cents, indexed by provider ordinal.
+     */
+    long[] revenueByProvider(Date first, Date last);
+
+    /**
+     * Gets the appointments that match a range query.
+     * 
+     * @param query The dates and conditions of the appointments to get.
+     * @return The matching appointments in date/timeslot/provider order.
+     */
+    Iterable<Appointment> range(RangeQuery query);
+
+    /**
+     * Gets the appointments ordered by date and timeslot, then by provider name.
+     * 
+     * @return The appointments in date/timeslot/provider order.
+     */
+    Iterable<Appointment> byAppointment();
+
+    /**
+     * Gets the appointments ordered by patient profile, then by date and
+     * timeslot.
+     * 
+     * @return The appointments in patient/date/timeslot order.
+     */
+    Iterable<Appointment> byPatient();
+
+    /**
+     * Gets the appointments ordered by provider county, then by date and
+     * timeslot.
+     * 
+     * @return The appointments in county/date/timeslot order.
+     */
+    Iterable<Appointment> byLocation();
+}
@@ -0,0 +1,88 @@
+package ruclinic;
+
+import java.util.ArrayList;
+
+/**
+ * The Availability class finds the earliest open timeslots in an appointment
+ * book. It walks the bookable dates from a start date to the end of the six
+ * month horizon and reads each candidate provider's booked timeslots on a date
+ * as one bit mask, so a day is checked with a few table lookups instead of a
+ * scan of the book.
+ *
+ * @author Paldeep Sekhon
+ * @author Aditya Ponni
+ */
+public final class Availability {
+    private static final Timeslot[] TIMESLOTS = Timeslot.values();
+    private static final Provider[] PROVIDERS = Provider.values();
+
+    /**
+     * Not instantiable; all methods are static.
+     */
+    private Availability() {
+    }
+
+    /**
+     * Gets the providers that match a filter. Each condition left null matches
+     * every provider.
+     *
+     * @param providers The providers to filter, in name order.
+     * @param provider  The provider, or null for any provider.
+     * @param specialty The specialty, or null for any specialty.
+     * @param county    The county, or null for any county.
+     * @return The matching providers in name order.
+     */
+    public static Provider[] filter(Provider[] providers, Provider provider, Specialty specialty, String county) {
+        ArrayList<Provider> matching = new ArrayList<>();
+        for (Provider candidate : providers) {
+            if ((provider == null || candidate == provider)
+                    && (specialty == null || candidate.getSpecialty() == specialty)
+                    && (county == null || candidate.getLocation().getCounty().equalsIgnoreCase(county))) {
+                matching.add(candidate);
+            }
+        }
+        return matching.toArray(new Provider[0]);
+    }
+
+    /**
+     * Finds the earliest open timeslots of some providers, ordered by date,
+     * timeslot and provider name like the appointment list. Only dates the
+     * policy lets be booked are searched.
+     *
+     * @param book      The appointment book.
+     * @param policy    The policy of which dates can be booked.
+     * @param providers The providers to search, in name order.
+     * @param from      The first date to search; earlier dates are skipped.
+     * @param count     The most openings to find.
+     * @return The openings found, fewer than count if the horizon runs out.
+     */
+    public static Opening[] earliest(AppointmentBook book, DatePolicy policy, Provider[] providers, Date from,
+            int count) {
+        ArrayList<Opening> openings = new ArrayList<>(Math.min(count, TIMESLOTS.length * PROVIDERS.length));
+        int[] booked = new int[providers.length];
+        Date last = policy.horizonEnd();
+        Date tomorrow = policy.today().plusDays(1);
+        Date date = from.compareTo(tomorrow) < 0 ? tomorrow : from;
+        for (; openings.size() < count && date.compareTo(last) <= 0; date = date.plusDays(1)) {
+            if (policy.check(date) != DatePolicy.Result.BOOKABLE) {
+                continue;
+            }
+            int free = 0;
+            for (int i = 0; i < providers.length; i++) {
+                booked[i] = book.bookedSlots(providers[i], date);
+                free |= ~booked[i];
+            }
+            if ((free & (1 << TIMESLOTS.length) - 1) == 0) {
+                continue; // every provider is full on this date
+            }
+            for (int slot = 0; slot < TIMESLOTS.length && openings.size() < count; slot++) {
+                for (int i = 0; i < providers.length && openings.size() < count; i++) {
+                    if ((booked[i] & 1 << slot) == 0) {
+                        openings.add(new Opening(date, TIMESLOTS[slot], providers[i]));
+                    }
+                }
+            }
+        }
+        return openings.toArray(new Opening[0]);
+    }
+}
@@ -0,0 +1,175 @@
+package ruclinic;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * The Billing class totals the charges of appointments per patient. Each
+ * appointment is added to its patient's total in a hash table in one pass, in
+ * any order, so only the distinct patients are sorted when the statements are
+ * printed. Amounts are kept in whole cents.
+ *
+ * @author Paldeep Sekhon
+ * @author Aditya Ponni
+ */
+public class Billing {
+    private Profile[] patients; // patients in the order they were first billed
+    private long[] totals; // amount due in cents of the patient at the same position
+    private int size; // number of patients
+    private int[] index; // hash buckets holding array position + 1, 0 marks an empty bucket
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Constructs an empty billing of no patients.
+     */
+    public Billing() {
+        patients = new Profile[INITIAL_CAPACITY];
+        totals = new long[INITIAL_CAPACITY];
+        size = 0;
+        index = new int[INITIAL_CAPACITY * 2];
+    }
+
+    /**
+     * Adds the charge of every appointment to its patient's total.
+     *
+     * @param appointments The appointments to bill.
+     */
+    public void addAll(Iterable<Appointment> appointments) {
+        for (Appointment appointment : appointments) {
+            add(appointment);
+        }
+    }
+
+    /**
+     * Adds the charge of an appointment, based on its provider's specialty, to
+     * its patient's total.
+     *
+     * @param appointment The appointment to bill.
+     */
+    public void add(Appointment appointment) {
+        add(appointment.getPatient(), appointment.getProvider().getSpecialty().getCharge() * 100L);
+    }
+
+    /**
+     * Adds the charge of every patient's past visits to the patient's total,
+     * using the running charge each patient keeps.
+     *
+     * @param record The medical record holding the visits.
+     */
+    public void addVisits(MedicalRecord record) {
+        Patient[] recorded = record.getPatients();
+        for (int i = 0; i < record.getSize(); i++) {
+            if (recorded[i].getVisitCount() > 0) {
+                add(recorded[i].getProfile(), recorded[i].charge() * 100L);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of patients billed.
+     *
+     * @return The number of patients.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the amount a patient owes.
+     *
+     * @param patient The profile of the patient.
+     * @return The amount due in cents, 0 if the patient was not billed.
+     */
+    public long totalOf(Profile patient) {
+        int position = find(patient);
+        return position < 0 ? 0 : totals[position];
+    }
+
+    /**
+     * Writes one numbered statement line per patient, ordered by patient
+     * profile.
+     *
+     * @param out The stream to write the statements to.
+     */
+    public void print(PrintStream out) {
+        Profile[] sorted = Arrays.copyOf(patients, size);
+        Arrays.sort(sorted);
+        for (int i = 0; i < size; i++) {
+            out.println("(" + (i + 1) + ") " + sorted[i] + " [amount due: " + dollars(totalOf(sorted[i])) + "]");
+        }
+    }
+
+    /**
+     * Formats an amount of cents as dollars with thousands separators, such as
+     * $1,050.00.
+     *
+     * @param cents The amount in cents, not negative.
+     * @return The formatted amount.
+     */
+    static String dollars(long cents) {
+        return String.format("$%,d.%02d", cents / 100, cents % 100);
+    }
+
+    /**
+     * Adds an amount to a patient's total.
+     *
+     * @param patient The profile of the patient.
+     * @param cents   The amount in cents.
+     */
+    private void add(Profile patient, long cents) {
+        int position = find(patient);
+        if (position < 0) {
+            position = insert(patient);
+        }
+        totals[position] += cents;
+    }
+
+    /**
+     * Finds the position of a patient's total.
+     *
+     * @param patient The profile of the patient.
+     * @return The position if found, -1 otherwise.
+     */
+    private int find(Profile patient) {
+        int mask = index.length - 1;
+        for (int i = Probing.bucket(patient.hashCode(), index.length); index[i] != 0; i = (i + 1) & mask) {
+            if (patients[index[i] - 1].equals(patient)) {
+                return index[i] - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Adds a patient with a total of 0, growing the arrays and the index as
+     * needed.
+     *
+     * @param patient The profile of the patient, not billed yet.
+     * @return The position of the patient's total.
+     */
+    private int insert(Profile patient) {
+        if (size == patients.length) {
+            patients = Arrays.copyOf(patients, size * 2);
+            totals = Arrays.copyOf(totals, size * 2);
+        }
+        patients[size++] = patient;
+        if (size * 2 > index.length) {
+            index = new int[index.length * 2];
+            for (int i = 0; i < size; i++) {
+                place(i);
+            }
+        } else {
+            place(size - 1);
+        }
+        return size - 1;
+    }
+
+    /**
+     * Stores an array position in the first free bucket of its probe sequence.
+     *
+     * @param position The position of a patient in the arrays.
+     */
+    private void place(int position) {
+        Probing.place(index, position, patients[position].hashCode());
+    }
+}
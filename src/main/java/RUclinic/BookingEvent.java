@@ -0,0 +1,138 @@
+package ruclinic;
+
+/**
+ * The BookingEvent class is one change to the appointment book as other
+ * systems see it: a booking, a cancellation or a reschedule. The slots of an
+ * EventBus are events that are filled again for every change, and a consumer
+ * reads each change into an event of its own, so publishing and reading
+ * allocate nothing.
+ *
+ * @author Paldeep Sekhon
+ * @author Aditya Ponni
+ */
+public final class BookingEvent {
+    /**
+     * The kind of change an event records.
+     */
+    public enum Kind {
+        BOOK, CANCEL, RESCHEDULE
+    }
+
+    private long sequence; // the number of the change, from 0, in the order changes were published
+    private Kind kind;
+    private Date date;
+    private Timeslot timeslot; // the timeslot of the appointment after the change
+    private Timeslot from; // the timeslot before a reschedule, null for other kinds
+    private Provider provider;
+    private Profile patient;
+
+    /**
+     * Gets the number of the change. Numbers have no gaps, so a consumer can
+     * tell how many changes it missed.
+     *
+     * @return The sequence number of the change.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Gets the kind of change.
+     *
+     * @return The kind of change.
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Gets the date of the appointment.
+     *
+     * @return The date of the appointment.
+     */
+    public Date getDate() {
+        return date;
+    }
+
+    /**
+     * Gets the timeslot of the appointment: the booked or canceled timeslot, or
+     * the new timeslot of a reschedule.
+     *
+     * @return The timeslot of the appointment.
+     */
+    public Timeslot getTimeslot() {
+        return timeslot;
+    }
+
+    /**
+     * Gets the timeslot a rescheduled appointment was moved from.
+     *
+     * @return The old timeslot, or null if the change is not a reschedule.
+     */
+    public Timeslot getFrom() {
+        return from;
+    }
+
+    /**
+     * Gets the provider of the appointment.
+     *
+     * @return The provider of the appointment.
+     */
+    public Provider getProvider() {
+        return provider;
+    }
+
+    /**
+     * Gets the profile of the patient of the appointment.
+     *
+     * @return The profile of the patient.
+     */
+    public Profile getPatient() {
+        return patient;
+    }
+
+    /**
+     * Fills the event with a change.
+     *
+     * @param sequence    The number of the change.
+     * @param kind        The kind of change.
+     * @param appointment The appointment after the change.
+     * @param from        The timeslot before a reschedule, or null.
+     */
+    void set(long sequence, Kind kind, Appointment appointment, Timeslot from) {
+        this.sequence = sequence;
+        this.kind = kind;
+        this.date = appointment.getDate();
+        this.timeslot = appointment.getTimeslot();
+        this.from = from;
+        this.provider = appointment.getProvider();
+        this.patient = appointment.getPatient();
+    }
+
+    /**
+     * Copies the change of another event into this one.
+     *
+     * @param other The event to copy.
+     */
+    void copyFrom(BookingEvent other) {
+        sequence = other.sequence;
+        kind = other.kind;
+        date = other.date;
+        timeslot = other.timeslot;
+        from = other.from;
+        provider = other.provider;
+        patient = other.patient;
+    }
+
+    /**
+     * Provides the change as text, such as "#3 RESCHEDULE 11/20/2026 9:00 AM
+     * (from 10:45 AM) John Doe 12/13/1989 PATEL".
+     *
+     * @return The change as text.
+     */
+    @Override
+    public String toString() {
+        return "#" + sequence + " " + kind + " " + date + " " + timeslot + (from != null ? " (from " + from + ")" : "")
+                + " " + patient + " " + provider.name();
+    }
+}
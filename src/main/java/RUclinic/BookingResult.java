@@ -0,0 +1,14 @@
+package ruclinic;
+
+/**
+ * Enum representing the outcome of a change to an appointment book.
+ * 
+ * @author Paldeep Sekhon
+ * @author Aditya Ponni
+ */
+public enum BookingResult {
+    BOOKED, // the appointment was booked or moved
+    DUPLICATE, // the patient already has the same appointment
+    UNAVAILABLE, // the provider already has an appointment at the timeslot
+    NOT_FOUND // the appointment is not in the book
+}
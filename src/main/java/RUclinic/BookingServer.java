@@ -0,0 +1,261 @@
+package ruclinic;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+
+/**
+ * The BookingServer class lets many front desk terminals book at the same time.
+ * It listens on a local port and gives each connection its own Scheduler over
+ * one shared appointment book. A client sends the same command lines as the
+ * console and reads back the same output.
+ * Each connection is served by its own thread: a virtual thread when the Java
+ * runtime has them, otherwise a pooled platform thread.
+ * 
+ * @author Paldeep Sekhon
+ * @author Aditya Ponni
+ */
+public class BookingServer {
+    private static final int DEFAULT_PORT = 5150;
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 13;
+    private static final int SNAPSHOT_MINUTES = 5;
+    private static final int EVENT_CAPACITY = 1 << 14;
+    private static final int SWEEP_MINUTES = 10;
+    private final AppointmentBook service;
+    private final ServerSocket serverSocket;
+    private final ExecutorService clients;
+    private final DatePolicy datePolicy; // shared, so the table of bookable dates is built once a day
+    private final Metrics metrics; // the command statistics of every client
+    private final EventBus events; // the changes of every client, for other systems to read
+    private final MedicalRecord history; // the visits of past days, changed only by the sweeper thread under its lock
+    private final ScheduledExecutorService sweeps; // runs the sweeper of the shared book and writes its snapshots
+
+    /**
+     * Constructs a server listening on a port of the loopback address, with no
+     * visits of past days yet.
+     * 
+     * @param port    The port to listen on, or 0 for any free port.
+     * @param service The appointment book shared by all clients.
+     * @throws IOException if the port cannot be opened.
+     */
+    public BookingServer(int port, AppointmentBook service) throws IOException {
+        this(port, service, new MedicalRecord());
+    }
+
+    /**
+     * Constructs a server listening on a port of the loopback address.
+     * 
+     * @param port    The port to listen on, or 0 for any free port.
+     * @param service The appointment book shared by all clients.
+     * @param history The visits of past days recovered with the book, which
+     *                only the sweeper thread changes from now on.
+     * @throws IOException if the port cannot be opened.
+     */
+    public BookingServer(int port, AppointmentBook service, MedicalRecord history) throws IOException {
+        this.service = service;
+        this.serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+        this.clients = newClientExecutor();
+        this.datePolicy = new DatePolicy(Clock.systemDefaultZone());
+        this.metrics = Scheduler.newMetrics();
+        this.events = new EventBus(EVENT_CAPACITY, EventBus.Policy.DROP);
+        service.publishTo(events);
+        this.history = history;
+        this.sweeps = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeps.scheduleWithFixedDelay(new Sweeper(service, history, datePolicy), 0, SWEEP_MINUTES,
+                TimeUnit.MINUTES);
+    }
+
+    /**
+     * Gets the patients whose appointments on past days were swept out of the
+     * shared book, with those appointments as their visits. The clients share
+     * the book but each has its own medical record, so the server keeps the
+     * visits in one record that only the sweeper thread changes, and the
+     * patients are copied on that thread.
+     * 
+     * @return The patients of past visits, as of the last sweep.
+     */
+    public Patient[] getHistory() {
+        return CompletableFuture.supplyAsync(() -> Arrays.copyOf(history.getPatients(), history.getSize()), sweeps)
+                .join();
+    }
+
+    /**
+     * Gets the bus every client's bookings, cancellations and reschedules are
+     * published to. A consumer that falls behind by a whole ring misses events
+     * rather than slowing the clients down.
+     * 
+     * @return The shared event bus.
+     */
+    public EventBus getEvents() {
+        return events;
+    }
+
+    /**
+     * Gets the command statistics of all clients together.
+     * 
+     * @return The shared metrics.
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Gets the port the server is listening on.
+     * 
+     * @return The local port.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accepts connections until the server is closed, serving each one on its
+     * own thread.
+     */
+    public void serve() {
+        try {
+            while (!serverSocket.isClosed()) {
+                Socket client = serverSocket.accept();
+                clients.execute(() -> handle(client));
+            }
+        } catch (IOException e) {
+            // the server socket was closed
+        } finally {
+            clients.shutdown();
+        }
+    }
+
+    /**
+     * Stops accepting connections. Clients already connected are served until
+     * they quit.
+     * 
+     * @throws IOException if the server socket cannot be closed.
+     */
+    public void close() throws IOException {
+        sweeps.shutdown();
+        serverSocket.close();
+    }
+
+    /**
+     * Writes a snapshot of a journaled book and the visit history every few
+     * minutes while bookings go on. The snapshots are written on the sweeper
+     * thread, so no sweep moves appointments into the history while one is
+     * written.
+     * 
+     * @param journaled The booking service this server shares.
+     * @param path      The path of the snapshot file.
+     */
+    private void writeSnapshots(BookingService journaled, Path path) {
+        sweeps.scheduleWithFixedDelay(() -> {
+            try {
+                Snapshot.write(journaled, history, path);
+            } catch (IOException e) {
+                System.err.println("Snapshot failed: " + e.getMessage());
+            }
+        }, SNAPSHOT_MINUTES, SNAPSHOT_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Runs a scheduler over one client connection until the client quits or
+     * disconnects.
+     * 
+     * @param client The client connection.
+     */
+    private void handle(Socket client) {
+        try (Socket socket = client;
+                BufferedReader in = new BufferedReader(
+                        new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                PrintStream out = new PrintStream(
+                        new BufferedOutputStream(socket.getOutputStream(), OUTPUT_BUFFER_SIZE), false,
+                        StandardCharsets.UTF_8)) {
+            new Scheduler(service, new MedicalRecord(), datePolicy, metrics, history, null, out).run(in);
+        } catch (IOException e) {
+            // the client disconnected
+        }
+    }
+
+    /**
+     * Creates the executor for client connections. Virtual threads are looked up
+     * at run time because the project is built for Java 17, where they do not
+     * exist yet.
+     * 
+     * @return A virtual thread per task executor, or a cached thread pool.
+     */
+    private static ExecutorService newClientExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Starts a booking server on the given port, or on port 5150. With -sharded
+     * after the port, the appointments are kept in one shard per location, each
+     * changed by its own worker thread. With a journal path instead, the
+     * appointment book and the visits of past days are loaded from the
+     * snapshot next to the journal and the journal changes made after it,
+     * every change is written to the journal, and a new snapshot is written in
+     * the background every few minutes while bookings go on.
+     * 
+     * @param args The port to listen on and the journal path or -sharded, both
+     *             optional.
+     * @throws IOException if the port, the journal or the snapshot cannot be
+     *                     opened.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        if (args.length > 1 && args[1].equals("-sharded")) {
+            serve(new BookingServer(port, new ShardedBook()));
+            return;
+        }
+        BookingService service = new BookingService();
+        if (args.length < 2) {
+            serve(new BookingServer(port, service));
+            return;
+        }
+        Path journalPath = Paths.get(args[1]);
+        Path snapshotPath = journalPath.resolveSibling(journalPath.getFileName() + ".snapshot");
+        MedicalRecord history = Snapshot.read(snapshotPath, service);
+        service.recover(new Journal(journalPath), history);
+        BookingServer server = new BookingServer(port, service, history);
+        server.writeSnapshots(service, snapshotPath);
+        serve(server);
+    }
+
+    /**
+     * Serves until the server is closed.
+     * 
+     * @param server The server to run.
+     */
+    private static void serve(BookingServer server) {
+        try {
+            server.getMetrics().register();
+        } catch (JMException e) {
+            System.err.println("Command statistics are not published over JMX: " + e.getMessage());
+        }
+        System.out.println("Booking server is listening on port " + server.getPort() + ".");
+        server.serve();
+    }
+}
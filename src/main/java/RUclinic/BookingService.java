@@ -0,0 +1,635 @@
+package ruclinic;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * The BookingService class is a thread-safe appointment book that many
+ * schedulers can share. The appointments are split into stripes by provider and
+ * day, each a List guarded by its own lock, so bookings for different providers
+ * or days run in parallel and only changes to the same provider/day pair wait
+ * for each other. All appointments of a provider on a day are in one stripe, so
+ * every booking check and its update happen under a single lock.
+ * With a Journal, each change is appended to the journal under the same lock,
+ * so the journal holds the changes of a stripe in the order they were made, and
+ * the change returns once the journal is on disk.
+ * 
+ * @author Paldeep Sekhon
+ * @author Aditya Ponni
+ */
+public class BookingService implements AppointmentBook {
+    static final int STRIPES = 64; // a power of two, one bit of a long per stripe
+    private static final Provider[] PROVIDERS = Provider.values(); // by ordinal
+    private final List[] stripes; // appointments of the provider/day pairs that hash to each stripe
+    private final ReentrantLock[] locks; // the lock of the stripe with the same index
+    private final AtomicInteger size; // number of appointments in all stripes
+    private Journal journal; // where changes are logged, or null
+    private final long[] restoredTo; // journal position each stripe was loaded from a snapshot at
+
+    /**
+     * Constructs an empty booking service.
+     */
+    public BookingService() {
+        stripes = new List[STRIPES];
+        locks = new ReentrantLock[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new List();
+            locks[i] = new ReentrantLock();
+        }
+        size = new AtomicInteger();
+        restoredTo = new long[STRIPES];
+    }
+
+    /**
+     * Constructs a booking service holding the appointments recorded in a
+     * journal, which then logs every change made to the service.
+     * 
+     * @param journal The journal to replay and write to.
+     * @throws IOException if the journal cannot be read.
+     */
+    public BookingService(Journal journal) throws IOException {
+        this();
+        recover(journal, null);
+    }
+
+    /**
+     * Replays the journal changes that are newer than the loaded snapshot, if
+     * any, and then logs every change made to the service to the journal. This
+     * must be done before the service is shared.
+     * 
+     * @param journal The journal to replay and write to.
+     * @param history The medical record the replayed retired appointments are
+     *                added to as visits, such as the one loaded with the
+     *                snapshot, or null to keep no visits.
+     * @throws IOException if the journal cannot be read.
+     */
+    public void recover(Journal journal, MedicalRecord history) throws IOException {
+        long from = Long.MAX_VALUE;
+        for (long position : restoredTo) {
+            from = Math.min(from, position);
+        }
+        journal.replay(this, history, from);
+        this.journal = journal;
+    }
+
+    /**
+     * Books an appointment if the patient does not already have it and the
+     * provider is free at its timeslot. The checks and the booking happen under
+     * the lock of the provider/day stripe.
+     * 
+     * @param appointment The appointment to book.
+     * @return BOOKED if the appointment was added, DUPLICATE if the book already
+     *         has it, or UNAVAILABLE if the provider is taken at the timeslot.
+     */
+    @Override
+    public BookingResult book(Appointment appointment) {
+        int stripe = stripeOf(appointment.getProvider(), appointment.getDate());
+        BookingResult result;
+        long position = 0;
+        locks[stripe].lock();
+        try {
+            result = stripes[stripe].book(appointment);
+            if (result == BookingResult.BOOKED && journal != null) {
+                position = journal.append(Journal.BOOK, appointment, appointment.getTimeslot());
+            }
+        } finally {
+            locks[stripe].unlock();
+        }
+        if (result == BookingResult.BOOKED) {
+            size.incrementAndGet();
+            sync(position);
+        }
+        return result;
+    }
+
+    /**
+     * Books a batch of appointments as one change. The batch is split by
+     * stripe, the locks of the stripes it touches are taken in stripe order, and
+     * each stripe books its part in one pass, so no other change sees part of
+     * the batch. The journal is synced once, after the last booking.
+     * 
+     * @param batch The appointments to book.
+     * @return The result of each appointment, at the same position as in the
+     *         batch.
+     */
+    @Override
+    public BookingResult[] bookAll(Appointment[] batch) {
+        int[] starts = new int[STRIPES + 1]; // where each stripe's part begins in the grouped order
+        int[] stripeOf = new int[batch.length];
+        for (int i = 0; i < batch.length; i++) {
+            stripeOf[i] = stripeOf(batch[i].getProvider(), batch[i].getDate());
+            starts[stripeOf[i] + 1]++;
+        }
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            starts[stripe + 1] += starts[stripe];
+        }
+        int[] grouped = new int[batch.length]; // batch positions grouped by stripe, in batch order
+        int[] next = Arrays.copyOf(starts, STRIPES);
+        for (int i = 0; i < batch.length; i++) {
+            grouped[next[stripeOf[i]]++] = i;
+        }
+        BookingResult[] results = new BookingResult[batch.length];
+        int booked = 0;
+        long position = 0;
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            if (starts[stripe] < starts[stripe + 1]) {
+                locks[stripe].lock();
+            }
+        }
+        try {
+            for (int stripe = 0; stripe < STRIPES; stripe++) {
+                Appointment[] part = new Appointment[starts[stripe + 1] - starts[stripe]];
+                if (part.length == 0) {
+                    continue;
+                }
+                for (int i = 0; i < part.length; i++) {
+                    part[i] = batch[grouped[starts[stripe] + i]];
+                }
+                BookingResult[] partResults = stripes[stripe].bookAll(part);
+                for (int i = 0; i < part.length; i++) {
+                    results[grouped[starts[stripe] + i]] = partResults[i];
+                    if (partResults[i] == BookingResult.BOOKED) {
+                        booked++;
+                        if (journal != null) {
+                            position = journal.append(Journal.BOOK, part[i], part[i].getTimeslot());
+                        }
+                    }
+                }
+            }
+        } finally {
+            for (int stripe = STRIPES - 1; stripe >= 0; stripe--) {
+                if (starts[stripe] < starts[stripe + 1]) {
+                    locks[stripe].unlock();
+                }
+            }
+        }
+        if (booked > 0) {
+            size.addAndGet(booked);
+            sync(position);
+        }
+        return results;
+    }
+
+    /**
+     * Finds the appointment a patient has at a timeslot on the given date,
+     * checking the stripe of each provider on that date.
+     * 
+     * @param date     The date of the appointment.
+     * @param timeslot The timeslot of the appointment.
+     * @param patient  The profile of the patient.
+     * @return The appointment if found, or null if not found.
+     */
+    @Override
+    public Appointment find(Date date, Timeslot timeslot, Profile patient) {
+        for (long left = stripesOf(date); left != 0; left &= left - 1) {
+            int stripe = Long.numberOfTrailingZeros(left);
+            locks[stripe].lock();
+            try {
+                Appointment appointment = stripes[stripe].find(date, timeslot, patient);
+                if (appointment != null) {
+                    return appointment;
+                }
+            } finally {
+                locks[stripe].unlock();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Cancels the appointment a patient has at a timeslot on the given date,
+     * checking the stripe of each provider on that date.
+     * 
+     * @param date     The date of the appointment.
+     * @param timeslot The timeslot of the appointment.
+     * @param patient  The profile of the patient.
+     * @return The canceled appointment, or null if there was none.
+     */
+    @Override
+    public Appointment cancel(Date date, Timeslot timeslot, Profile patient) {
+        for (long left = stripesOf(date); left != 0; left &= left - 1) {
+            int stripe = Long.numberOfTrailingZeros(left);
+            Appointment appointment;
+            long position = 0;
+            locks[stripe].lock();
+            try {
+                appointment = stripes[stripe].cancel(date, timeslot, patient);
+                if (appointment != null && journal != null) {
+                    position = journal.append(Journal.CANCEL, appointment, timeslot);
+                }
+            } finally {
+                locks[stripe].unlock();
+            }
+            if (appointment != null) {
+                size.decrementAndGet();
+                sync(position);
+                return appointment;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Cancels every appointment that matches a range query. Each stripe cancels
+     * its part under its own lock, so the appointments of a stripe are canceled
+     * together, and the journal is synced once at the end.
+     * 
+     * @param query The dates and conditions of the appointments to cancel.
+     * @return The canceled appointments in date/timeslot/provider order.
+     */
+    @Override
+    public Appointment[] cancelAll(RangeQuery query) {
+        return removeAll(stripe -> stripe.cancelAll(query), Journal.CANCEL);
+    }
+
+    /**
+     * Removes every appointment dated before a day, stripe by stripe, and logs
+     * each one as retired, so a replay of the journal makes it a visit again
+     * instead of losing it.
+     * 
+     * @param day The first day to keep.
+     * @return The removed appointments in date/timeslot/provider order.
+     */
+    @Override
+    public Appointment[] retire(Date day) {
+        return removeAll(stripe -> stripe.retire(day), Journal.RETIRE);
+    }
+
+    /**
+     * Removes appointments from every stripe, each stripe under its own lock,
+     * so the appointments of a stripe are removed together, and syncs the
+     * journal once at the end.
+     * 
+     * @param change Removes the appointments from one stripe.
+     * @param type   How the removals are logged: Journal.CANCEL or RETIRE.
+     * @return The removed appointments in date/timeslot/provider order.
+     */
+    private Appointment[] removeAll(Function<List, Appointment[]> change, byte type) {
+        Appointment[][] parts = new Appointment[STRIPES][];
+        long position = 0;
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            locks[stripe].lock();
+            try {
+                parts[stripe] = change.apply(stripes[stripe]);
+                if (journal != null) {
+                    for (Appointment appointment : parts[stripe]) {
+                        position = journal.append(type, appointment, appointment.getTimeslot());
+                    }
+                }
+            } finally {
+                locks[stripe].unlock();
+            }
+        }
+        Appointment[] removed = ShardedBook.merge(parts, List::compareSlots);
+        if (removed.length > 0) {
+            size.addAndGet(-removed.length);
+            sync(position);
+        }
+        return removed;
+    }
+
+    /**
+     * Moves an appointment to a new timeslot on the same date if its provider is
+     * free then. The provider and date do not change, so the appointment stays
+     * in its stripe.
+     * 
+     * @param appointment The appointment to reschedule.
+     * @param timeslot    The new timeslot for the appointment.
+     * @return BOOKED if the appointment was moved, UNAVAILABLE if the provider
+     *         is taken at the new timeslot, or NOT_FOUND if the appointment was
+     *         canceled in the meantime.
+     */
+    @Override
+    public BookingResult reschedule(Appointment appointment, Timeslot timeslot) {
+        int stripe = stripeOf(appointment.getProvider(), appointment.getDate());
+        BookingResult result;
+        long position = 0;
+        locks[stripe].lock();
+        try {
+            result = stripes[stripe].reschedule(appointment, timeslot);
+            if (result == BookingResult.BOOKED && journal != null) {
+                position = journal.append(Journal.RESCHEDULE, appointment, timeslot);
+            }
+        } finally {
+            locks[stripe].unlock();
+        }
+        if (result == BookingResult.BOOKED) {
+            sync(position);
+        }
+        return result;
+    }
+
+    /**
+     * Publishes every change made from now on to an event bus. Each stripe
+     * publishes its changes under its lock, so the changes of a provider/day
+     * pair are published in the order they were made.
+     * 
+     * @param events The bus to publish to, or null to stop publishing.
+     */
+    @Override
+    public void publishTo(EventBus events) {
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            locks[stripe].lock();
+            try {
+                stripes[stripe].publishTo(events);
+            } finally {
+                locks[stripe].unlock();
+            }
+        }
+    }
+
+    /**
+     * Applies a change read from the journal without logging it again. A change
+     * the snapshot of its stripe already holds is skipped.
+     * 
+     * @param type        The kind of change: Journal.BOOK, CANCEL, RESCHEDULE or
+     *                    RETIRE.
+     * @param appointment The appointment that was changed, as it was before a
+     *                    reschedule.
+     * @param timeslot    The new timeslot of a reschedule.
+     * @param position    The journal position just after the change.
+     * @return true if the change was applied, false if the snapshot already
+     *         held it or it no longer applies.
+     */
+    boolean restore(byte type, Appointment appointment, Timeslot timeslot, long position) {
+        int index = stripeOf(appointment.getProvider(), appointment.getDate());
+        if (position <= restoredTo[index]) {
+            return false;
+        }
+        List stripe = stripes[index];
+        switch (type) {
+            case Journal.BOOK:
+                if (stripe.book(appointment) == BookingResult.BOOKED) {
+                    size.incrementAndGet();
+                    return true;
+                }
+                return false;
+            case Journal.CANCEL:
+            case Journal.RETIRE:
+                if (stripe.contains(appointment)) {
+                    stripe.remove(appointment);
+                    size.decrementAndGet();
+                    return true;
+                }
+                return false;
+            case Journal.RESCHEDULE:
+                if (stripe.contains(appointment)) {
+                    stripe.remove(appointment);
+                    stripe.add(new Appointment(appointment.getDate(), timeslot, appointment.getPatient(),
+                            appointment.getProvider()));
+                    return true;
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Lists the appointments of one stripe under its lock, for a snapshot
+     * written while bookings go on. Appointments never change once booked, so
+     * the list stays as it was when it was taken.
+     * 
+     * @param stripe    The stripe to list.
+     * @param positions Receives the journal position the list is current to, at
+     *                  the stripe's index.
+     * @return The stripe's appointments in date/timeslot/provider order.
+     */
+    Appointment[] capture(int stripe, long[] positions) {
+        locks[stripe].lock();
+        try {
+            Appointment[] listed = new Appointment[stripes[stripe].size()];
+            int i = 0;
+            for (Appointment appointment : stripes[stripe].byAppointment()) {
+                listed[i++] = appointment;
+            }
+            positions[stripe] = journal != null ? journal.position() : 0;
+            return listed;
+        } finally {
+            locks[stripe].unlock();
+        }
+    }
+
+    /**
+     * Fills an empty service with the appointments of a snapshot, before the
+     * service is shared.
+     * 
+     * @param bySlot     The appointments of each stripe in date/timeslot/
+     *                   provider order; the arrays are taken over.
+     * @param byPatient  The same appointments in patient/date/timeslot order.
+     * @param byLocation The same appointments in county/date/timeslot order.
+     * @param counts     The number of appointments of each stripe.
+     * @param positions  The journal position each stripe's part is current to.
+     */
+    void load(Appointment[][] bySlot, Appointment[][] byPatient, Appointment[][] byLocation, int[] counts,
+            long[] positions) {
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            stripes[stripe].load(bySlot[stripe], byPatient[stripe], byLocation[stripe], counts[stripe]);
+            size.addAndGet(counts[stripe]);
+            restoredTo[stripe] = positions[stripe];
+        }
+    }
+
+    /**
+     * Waits until the journal, if any, is on disk up to a position.
+     * 
+     * @param position A position returned by the journal.
+     * @throws UncheckedIOException if the journal could not be written.
+     */
+    void sync(long position) {
+        if (journal != null) {
+            try {
+                journal.sync(position);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Drops the journal records before a position, once a snapshot holds the
+     * changes they made.
+     * 
+     * @param below The position of the first record to keep.
+     * @throws IOException if the journal cannot be compacted.
+     */
+    void compact(long below) throws IOException {
+        if (journal != null) {
+            journal.compact(below);
+        }
+    }
+
+    /**
+     * Gets the number of appointments in the book.
+     * 
+     * @return The number of appointments in the book.
+     */
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Gets the timeslots a provider has booked on a date as a bit mask, read
+     * under the lock of the provider/day stripe.
+     * 
+     * @param provider The provider to check.
+     * @param date     The date to check.
+     * @return The bit mask of booked timeslots.
+     */
+    @Override
+    public int bookedSlots(Provider provider, Date date) {
+        int stripe = stripeOf(provider, date);
+        locks[stripe].lock();
+        try {
+            return stripes[stripe].bookedSlots(provider, date);
+        } finally {
+            locks[stripe].unlock();
+        }
+    }
+
+    /**
+     * Totals the charges of the appointments on the dates in a range, by
+     * provider. The stripes are totaled in parallel, each under its own lock.
+     * 
+     * @param first The first date of the range.
+     * @param last  The last date of the range, inclusive.
+     * @return The totals in cents, indexed by provider ordinal.
+     */
+    @Override
+    public long[] revenueByProvider(Date first, Date last) {
+        int firstDay = first.toEpochDay();
+        int lastDay = last.toEpochDay();
+        return Revenue.total(STRIPES, 1, (from, to, totals) -> {
+            for (int stripe = from; stripe < to; stripe++) {
+                locks[stripe].lock();
+                try {
+                    stripes[stripe].addRevenue(firstDay, lastDay, totals);
+                } finally {
+                    locks[stripe].unlock();
+                }
+            }
+        });
+    }
+
+    /**
+     * Gets a snapshot of the appointments that match a range query. Each stripe
+     * is queried under its own lock and the sorted results are merged.
+     * 
+     * @param query The dates and conditions of the appointments to get.
+     * @return The matching appointments in date/timeslot/provider order.
+     */
+    @Override
+    public Iterable<Appointment> range(RangeQuery query) {
+        ArrayList<Appointment> appointments = new ArrayList<>();
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            locks[stripe].lock();
+            try {
+                for (Appointment appointment : stripes[stripe].range(query)) {
+                    appointments.add(appointment);
+                }
+            } finally {
+                locks[stripe].unlock();
+            }
+        }
+        appointments.sort(List::compareSlots);
+        return appointments;
+    }
+
+    /**
+     * Gets a snapshot of the appointments ordered by date and timeslot, then by
+     * provider name.
+     * 
+     * @return The appointments in date/timeslot/provider order.
+     */
+    @Override
+    public Iterable<Appointment> byAppointment() {
+        return snapshot(List::byAppointment, List::compareSlots);
+    }
+
+    /**
+     * Gets a snapshot of the appointments ordered by patient profile, then by
+     * date and timeslot.
+     * 
+     * @return The appointments in patient/date/timeslot order.
+     */
+    @Override
+    public Iterable<Appointment> byPatient() {
+        return snapshot(List::byPatient, List::comparePatients);
+    }
+
+    /**
+     * Gets a snapshot of the appointments ordered by provider county, then by
+     * date and timeslot.
+     * 
+     * @return The appointments in county/date/timeslot order.
+     */
+    @Override
+    public Iterable<Appointment> byLocation() {
+        return snapshot(List::byLocation, List::compareLocations);
+    }
+
+    /**
+     * Copies one ordered view of every stripe, each under its own lock, and
+     * merges the copies. Each stripe's part is already sorted, so the sort only
+     * merges the sorted runs. Changes made after a stripe was copied are not
+     * seen.
+     * 
+     * @param view  The ordered view of a stripe to copy.
+     * @param order The ordering of the view.
+     * @return The appointments of all stripes in the view's order.
+     */
+    private Iterable<Appointment> snapshot(Function<List, OrderedIndex> view, Comparator<Appointment> order) {
+        Appointment[] appointments = new Appointment[Math.max(size.get(), 1)];
+        int count = 0;
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            locks[stripe].lock();
+            try {
+                OrderedIndex index = view.apply(stripes[stripe]);
+                if (count + index.size() > appointments.length) {
+                    appointments = Arrays.copyOf(appointments, Math.max(count + index.size(), appointments.length * 2));
+                }
+                for (Appointment appointment : index) {
+                    appointments[count++] = appointment;
+                }
+            } finally {
+                locks[stripe].unlock();
+            }
+        }
+        Arrays.sort(appointments, 0, count, order);
+        return Arrays.asList(appointments).subList(0, count);
+    }
+
+    /**
+     * Gets the stripes of every provider on a date as a bit mask, with bit i
+     * set when stripe i holds a provider's appointments on the date. Providers
+     * that share a stripe set the same bit, so each stripe is searched once.
+     * 
+     * @param date The date.
+     * @return The bit mask of the stripes.
+     */
+    private static long stripesOf(Date date) {
+        long stripes = 0;
+        for (Provider provider : PROVIDERS) {
+            stripes |= 1L << stripeOf(provider, date);
+        }
+        return stripes;
+    }
+
+    /**
+     * Gets the stripe holding the appointments of a provider on a date.
+     * 
+     * @param provider The provider.
+     * @param date     The date.
+     * @return The stripe index.
+     */
+    static int stripeOf(Provider provider, Date date) {
+        return Probing.bucket(date.toEpochDay() * 16 + provider.ordinal(), STRIPES);
+    }
+}
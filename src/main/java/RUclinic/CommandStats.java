@@ -0,0 +1,99 @@
+package ruclinic;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The CommandStats class holds the latency histogram and the outcome counts of
+ * one scheduler command. It is safe for many schedulers to record into at
+ * once.
+ *
+ * @author Paldeep Sekhon
+ * @author Aditya Ponni
+ */
+public class CommandStats implements CommandStatsMXBean {
+    private static final Outcome[] OUTCOMES = Outcome.values();
+    private static final double NANOS_PER_MICRO = 1000.0;
+
+    private final String command;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicLongArray outcomes = new AtomicLongArray(OUTCOMES.length);
+
+    /**
+     * Constructs empty statistics of a command.
+     *
+     * @param command The name of the command.
+     */
+    public CommandStats(String command) {
+        this.command = command;
+    }
+
+    /**
+     * Records one run of the command.
+     *
+     * @param outcome How the command ended.
+     * @param nanos   How long the command took in nanoseconds.
+     */
+    public void record(Outcome outcome, long nanos) {
+        latency.record(nanos);
+        outcomes.incrementAndGet(outcome.ordinal());
+    }
+
+    /**
+     * Gets the name of the command.
+     *
+     * @return The command name.
+     */
+    public String getCommand() {
+        return command;
+    }
+
+    @Override
+    public long getCount() {
+        return latency.count();
+    }
+
+    @Override
+    public double getP50Micros() {
+        return latency.percentile(50) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return latency.percentile(99) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return latency.percentile(99.9) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return latency.max() / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public Map<String, Long> getOutcomes() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Outcome outcome : OUTCOMES) {
+            long count = outcomes.get(outcome.ordinal());
+            if (count > 0) {
+                counts.put(outcome.name(), count);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Returns a one-line summary of the statistics.
+     *
+     * @return A string in the format "COMMAND count=N p50=.. p99=.. p999=.. max=.. {OUTCOME=N, ...}".
+     */
+    @Override
+    public String toString() {
+        return String.format("%s count=%d p50=%.1f p99=%.1f p999=%.1f max=%.1f %s", command, getCount(),
+                getP50Micros(), getP99Micros(), getP999Micros(), getMaxMicros(), getOutcomes());
+    }
+}
@@ -0,0 +1,56 @@
+package ruclinic;
+
+import java.util.Map;
+
+/**
+ * The management interface of the statistics of one scheduler command, as
+ * seen through JMX. Durations are in microseconds.
+ *
+ * @author Paldeep Sekhon
+ * @author Aditya Ponni
+ */
+public interface CommandStatsMXBean {
+
+    /**
+     * Gets the number of times the command ran.
+     *
+     * @return The count.
+     */
+    long getCount();
+
+    /**
+     * Gets the median duration of the command.
+     *
+     * @return The 50th percentile in microseconds.
+     */
+    double getP50Micros();
+
+    /**
+     * Gets the 99th percentile duration of the command.
+     *
+     * @return The 99th percentile in microseconds.
+     */
+    double getP99Micros();
+
+    /**
+     * Gets the 99.9th percentile duration of the command.
+     *
+     * @return The 99.9th percentile in microseconds.
+     */
+    double getP999Micros();
+
+    /**
+     * Gets the longest duration of the command.
+     *
+     * @return The maximum in microseconds.
+     */
+    double getMaxMicros();
+
+    /**
+     * Gets how many times the command ended with each outcome, leaving out
+     * outcomes that never happened.
+     *
+     * @return The counts by outcome name.
+     */
+    Map<String, Long> getOutcomes();
+}
@@ -0,0 +1,85 @@
+package ruclinic;
+
+import java.util.Arrays;
+
+/**
+ * The DailyRevenue class keeps the charges of past visits totaled by day and
+ * provider, so the revenue of a range of dates is a sum over the days of the
+ * range instead of a walk over every visit. The table is one row of totals per
+ * day, indexed by provider ordinal, covering the days from the earliest visit
+ * to the latest one, and grows at either end as visits are added.
+ *
+ * @author Paldeep Sekhon
+ * @author Aditya Ponni
+ */
+final class DailyRevenue {
+    private static final int PROVIDERS = Provider.values().length; // totals per row
+    private static final int INITIAL_DAYS = 64;
+    private long[] cents; // charges in cents at (day - firstDay) * PROVIDERS + provider ordinal
+    private int firstDay; // the epoch day of the first row
+    private int days; // number of rows in use, 0 before the first visit
+
+    /**
+     * Constructs an empty table.
+     */
+    DailyRevenue() {
+        cents = new long[0];
+        firstDay = 0;
+        days = 0;
+    }
+
+    /**
+     * Adds the charge of a visit to the total of its day and provider.
+     *
+     * @param appointment The appointment of the visit.
+     */
+    void add(Appointment appointment) {
+        int day = appointment.getDate().toEpochDay();
+        int provider = appointment.getProvider().ordinal();
+        cover(day);
+        cents[(day - firstDay) * PROVIDERS + provider] += Revenue.cents(provider);
+    }
+
+    /**
+     * Adds the charges of the visits on the days in a range to totals by
+     * provider.
+     *
+     * @param first  The epoch day the range starts on.
+     * @param last   The epoch day the range ends on, inclusive.
+     * @param totals The totals in cents to add to, indexed by provider ordinal.
+     */
+    void addTo(int first, int last, long[] totals) {
+        int from = Math.max(first, firstDay) - firstDay;
+        int to = Math.min(last, firstDay + days - 1) - firstDay;
+        for (int row = from * PROVIDERS; row <= to * PROVIDERS; row += PROVIDERS) {
+            for (int provider = 0; provider < PROVIDERS; provider++) {
+                totals[provider] += cents[row + provider];
+            }
+        }
+    }
+
+    /**
+     * Makes the table cover a day, adding empty rows before the first day or
+     * after the last one and doubling the array when it is too small.
+     *
+     * @param day The epoch day to cover.
+     */
+    private void cover(int day) {
+        if (days == 0) {
+            firstDay = day;
+        }
+        int first = Math.min(firstDay, day);
+        int rows = Math.max(firstDay + days, day + 1) - first;
+        int shift = (firstDay - first) * PROVIDERS; // where the old rows start in the new table
+        if (rows * PROVIDERS > cents.length) {
+            long[] grown = new long[Math.max(rows * 2, INITIAL_DAYS) * PROVIDERS];
+            System.arraycopy(cents, 0, grown, shift, days * PROVIDERS);
+            cents = grown;
+        } else if (shift > 0) {
+            System.arraycopy(cents, 0, cents, shift, days * PROVIDERS);
+            Arrays.fill(cents, 0, shift, 0);
+        }
+        firstDay = first;
+        days = rows;
+    }
+}
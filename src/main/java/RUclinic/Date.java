@@ -1,15 +1,26 @@
 package ruclinic;
 
+import java.util.Arrays;
+
 /**
  * Represents a date with year, month, and day fields.
+ * A valid date is stored as a single count of days since 1/1/1970 (the epoch
+ * day), so comparisons, hashing, and day arithmetic are plain integer math.
  * 
  * @author Paldeep Sekhon
  * @author Aditya Ponni
  */
 public class Date implements Comparable<Date> {
-    private int year;
-    private int month;
-    private int day;
+    private final int epochDay; // days since 1/1/1970
+    private final int[] entered; // year, month and day as given, kept only when the date is not valid
+    private String text; // the date as M/D/YYYY, built on first use
+
+    private static final int[] DAYS_IN_MONTH = { 0, 31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31 };
+    private static final int DAYS_PER_ERA = 146097; // days in 400 years
+    private static final int EPOCH_SHIFT = 719468; // days from 3/1/0000 to 1/1/1970
+    private static final int YEAR = 0;
+    private static final int MONTH = 1;
+    private static final int DAY = 2;
 
     /**
      * Constructs a Date object with the specified year, month, and day.
@@ -19,9 +30,28 @@ public class Date implements Comparable<Date> {
      * @param day   the day of the month (1-31 depending on the month)
      */
     public Date(int year, int month, int day) {
-        this.year = year;
-        this.month = month;
-        this.day = day;
+        this.epochDay = epochDayOf(year, month, day);
+        this.entered = isValid(year, month, day) ? null : new int[] { year, month, day };
+    }
+
+    /**
+     * Constructs a valid Date object from a count of days since 1/1/1970.
+     * 
+     * @param epochDay the number of days since 1/1/1970
+     */
+    private Date(int epochDay) {
+        this.epochDay = epochDay;
+        this.entered = null;
+    }
+
+    /**
+     * Creates the date that is the given number of days after 1/1/1970.
+     * 
+     * @param epochDay the number of days since 1/1/1970
+     * @return the date
+     */
+    public static Date ofEpochDay(int epochDay) {
+        return new Date(epochDay);
     }
 
     /**
@@ -31,7 +61,23 @@ public class Date implements Comparable<Date> {
      */
     @Override
     public String toString() {
-        return month + "/" + day + "/" + year;
+        String result = text;
+        if (result == null) {
+            result = getMonth() + "/" + getDay() + "/" + getYear();
+            text = result;
+        }
+        return result;
+    }
+
+    /**
+     * Appends the date as M/D/YYYY to a buffer, reusing the text built the
+     * first time the date was printed.
+     * 
+     * @param buffer the buffer to append to
+     * @return the buffer
+     */
+    public StringBuilder appendTo(StringBuilder buffer) {
+        return buffer.append(toString());
     }
 
     /**
@@ -49,12 +95,26 @@ public class Date implements Comparable<Date> {
         if (obj == null || getClass() != obj.getClass())
             return false;
         Date date = (Date) obj;
-        return year == date.year && month == date.month && day == date.day;
+        if (entered == null || date.entered == null) {
+            return entered == date.entered && epochDay == date.epochDay;
+        }
+        return Arrays.equals(entered, date.entered);
+    }
+
+    /**
+     * Returns a hash code for the date, which is its epoch day.
+     * 
+     * @return the hash code of this date
+     */
+    @Override
+    public int hashCode() {
+        return epochDay;
     }
 
     /**
      * Compares this date to another date.
-     * Dates are compared first by year, then by month, and finally by day.
+     * Dates are compared by their epoch day, which orders them by year, then
+     * month, then day.
      * 
      * @param other the date to be compared with
      * @return a negative integer, zero, or a positive integer as this date is
@@ -62,13 +122,7 @@ public class Date implements Comparable<Date> {
      */
     @Override
     public int compareTo(Date other) {
-        if (this.year != other.year) {
-            return this.year - other.year;
-        } else if (this.month != other.month) {
-            return this.month - other.month;
-        } else {
-            return this.day - other.day;
-        }
+        return Integer.compare(epochDay, other.epochDay);
     }
 
     /**
@@ -80,16 +134,26 @@ public class Date implements Comparable<Date> {
      */
 
     public boolean isValid() {
+        return entered == null;
+    }
+
+    /**
+     * Checks if a year, month, and day form a valid date.
+     * 
+     * @param year  the year of the date
+     * @param month the month of the date
+     * @param day   the day of the month
+     * @return true if the date is valid, false otherwise
+     */
+    private static boolean isValid(int year, int month, int day) {
         if (year < 1)
             return false; // Year must be positive
         if (month < 1 || month > 12)
             return false; // Month must be between 1 and 12
 
-        // Days in each month, with February adjusted for leap years
-        int[] daysInMonth = { 0, 31, (isLeapYear() ? 29 : 28), 31, 30, 31, 30, 31, 31, 30, 31, 30, 31 };
-
-        // Check if the day is within the valid range for the given month
-        return day >= 1 && day <= daysInMonth[month];
+        // February has one more day in leap years
+        int lastDay = DAYS_IN_MONTH[month] + (month == 2 && isLeapYear(year) ? 1 : 0);
+        return day >= 1 && day <= lastDay;
     }
 
     /**
@@ -97,10 +161,11 @@ public class Date implements Comparable<Date> {
      * A leap year is divisible by 4, but not by 100, unless it is also divisible by
      * 400.
      * 
+     * @param year the year to check
      * @return true if the year is a leap year, false otherwise
      */
 
-    private boolean isLeapYear() {
+    private static boolean isLeapYear(int year) {
         if (year % 400 == 0) {
             return true;
         } else if (year % 100 == 0) {
@@ -110,13 +175,84 @@ public class Date implements Comparable<Date> {
         }
     }
 
+    /**
+     * Converts a year, month, and day to days since 1/1/1970. Months and days
+     * out of range roll over into the next or previous month.
+     * 
+     * @param year  the year of the date
+     * @param month the month of the date
+     * @param day   the day of the month
+     * @return the number of days since 1/1/1970
+     */
+    private static int epochDayOf(int year, int month, int day) {
+        long y = year + Math.floorDiv(month - 1L, 12); // long so huge entered values cannot overflow
+        int m = Math.floorMod(month - 1L, 12) + 1;
+        y -= m <= 2 ? 1 : 0; // years run from March so the leap day comes last
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153L * (m > 2 ? m - 3 : m + 9) + 2) / 5;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return (int) (era * DAYS_PER_ERA + dayOfEra - EPOCH_SHIFT + day - 1);
+    }
+
+    /**
+     * Gets the number of days since 1/1/1970.
+     * 
+     * @return the epoch day of this date
+     */
+    public int toEpochDay() {
+        return epochDay;
+    }
+
+    /**
+     * Gets the day of the week, from 1 for Monday to 7 for Sunday.
+     * 
+     * @return the day of the week of this date
+     */
+    public int getDayOfWeek() {
+        return Math.floorMod(epochDay + 3, 7) + 1; // 1/1/1970 was a Thursday
+    }
+
+    /**
+     * Gets the date a number of days after this one.
+     * 
+     * @param days the number of days to add, which may be negative
+     * @return the new date
+     */
+    public Date plusDays(int days) {
+        return new Date(epochDay + days);
+    }
+
+    /**
+     * Gets the number of days from this date to another date.
+     * 
+     * @param other the other date
+     * @return the number of days, negative if the other date is earlier
+     */
+    public int daysUntil(Date other) {
+        return other.epochDay - epochDay;
+    }
+
+    /**
+     * Packs this date with a timeslot and a provider into one key. Keys order
+     * by date, then timeslot, then provider, the same order appointments are
+     * listed in.
+     * 
+     * @param timeslot the timeslot of the appointment
+     * @param provider the provider of the appointment
+     * @return the packed key
+     */
+    public long key(Timeslot timeslot, Provider provider) {
+        return (long) epochDay << 8 | timeslot.ordinal() << 4 | provider.ordinal();
+    }
+
     /**
      * Gets the year of this date.
      * 
      * @return the year of this date
      */
     public int getYear() {
-        return year;
+        return entered != null ? entered[YEAR] : civil(YEAR);
     }
 
     /**
@@ -125,7 +261,7 @@ public class Date implements Comparable<Date> {
      * @return the month of this date
      */
     public int getMonth() {
-        return month;
+        return entered != null ? entered[MONTH] : civil(MONTH);
     }
 
     /**
@@ -134,7 +270,31 @@ public class Date implements Comparable<Date> {
      * @return the day of this date
      */
     public int getDay() {
-        return day;
+        return entered != null ? entered[DAY] : civil(DAY);
+    }
+
+    /**
+     * Converts the epoch day back to one field of the calendar date.
+     * 
+     * @param field YEAR, MONTH, or DAY
+     * @return the value of the field
+     */
+    private int civil(int field) {
+        int shifted = epochDay + EPOCH_SHIFT;
+        int era = Math.floorDiv(shifted, DAYS_PER_ERA);
+        int dayOfEra = shifted - era * DAYS_PER_ERA;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int monthFromMarch = (5 * dayOfYear + 2) / 153;
+        int month = monthFromMarch < 10 ? monthFromMarch + 3 : monthFromMarch - 9;
+        switch (field) {
+            case YEAR:
+                return era * 400 + yearOfEra + (month <= 2 ? 1 : 0);
+            case MONTH:
+                return month;
+            default:
+                return dayOfYear - (153 * monthFromMarch + 2) / 5 + 1;
+        }
     }
 
     /**
@@ -173,5 +333,19 @@ public class Date implements Comparable<Date> {
         System.out.println("Test Case 6 - Date6: " + date6); // Should print "12/25/2023"
         System.out.println("Is Date6 valid? " + date6.isValid()); // Should print true
 
+        // Test Case 7: Epoch day of 1/1/1970 and the day after 2/28/2024
+        System.out.println("Test Case 7 - Epoch day: " + new Date(1970, 1, 1).toEpochDay()); // Should print 0
+        System.out.println("Day after 2/28/2024: " + new Date(2024, 2, 28).plusDays(1)); // Should print "2/29/2024"
+
+        // Test Case 8: Day of the week (10/17/2026 is a Saturday)
+        System.out.println("Test Case 8 - Day of week: " + new Date(2026, 10, 17).getDayOfWeek()); // Should print 6
+
+        // Test Case 9: Days between 12/25/2023 and 3/1/2024
+        System.out.println("Test Case 9 - Days between: " + date6.daysUntil(new Date(2024, 3, 1))); // Should print 67
+
+        // Test Case 10: compareTo() and equals() across years
+        System.out.println("Test Case 10 - Date5 compared to Date6: " + date5.compareTo(date6)); // Should print -1
+        System.out.println("Date6 equals 12/25/2023: " + date6.equals(new Date(2023, 12, 25))); // Should print true
+
     }
 }
@@ -0,0 +1,157 @@
+package ruclinic;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * The DatePolicy class decides which dates can be booked: dates after today,
+ * on a weekday that is not a clinic holiday, and no more than six months
+ * ahead. Today is read from a clock, so tests and replays can fix the date.
+ * Once per day the policy builds a table with one byte per date from today to
+ * the end of the six months, so checking a date is one array lookup and
+ * holidays cost nothing per check. The table is replaced as a whole when the
+ * day changes, so one policy can be shared by many threads.
+ *
+ * @author Paldeep Sekhon
+ * @author Aditya Ponni
+ */
+public class DatePolicy {
+    /**
+     * The outcome of checking an appointment date, in the order the checks
+     * are made.
+     */
+    public enum Result {
+        BOOKABLE, PAST, WEEKEND, HOLIDAY, BEYOND
+    }
+
+    private static final Result[] RESULTS = Result.values();
+    private static final int HORIZON_MONTHS = 6;
+
+    private final Clock clock;
+    private final int[] holidays; // epoch days of the clinic holidays, sorted
+    private volatile Horizon horizon; // the table of the current day
+
+    /**
+     * The dates that can be booked from one day, built once for that day.
+     */
+    private static final class Horizon {
+        private final Date today;
+        private final long start; // the first millisecond of the day
+        private final long end; // the first millisecond of the next day
+        private final byte[] days; // the result ordinal of each date from today to the end of the six months
+
+        /**
+         * Builds the table of a day.
+         *
+         * @param today    The day.
+         * @param zone     The time zone the day is in.
+         * @param holidays The epoch days of the clinic holidays, sorted.
+         */
+        private Horizon(LocalDate today, ZoneId zone, int[] holidays) {
+            this.today = Date.ofEpochDay((int) today.toEpochDay());
+            this.start = today.atStartOfDay(zone).toInstant().toEpochMilli();
+            this.end = today.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+            int first = this.today.toEpochDay();
+            days = new byte[(int) (today.plusMonths(HORIZON_MONTHS).toEpochDay() - first) + 1];
+            days[0] = (byte) Result.PAST.ordinal();
+            for (int i = 1; i < days.length; i++) {
+                Result result = isWeekend(first + i) ? Result.WEEKEND
+                        : Arrays.binarySearch(holidays, first + i) >= 0 ? Result.HOLIDAY : Result.BOOKABLE;
+                days[i] = (byte) result.ordinal();
+            }
+        }
+    }
+
+    /**
+     * Creates a policy with no clinic holidays.
+     *
+     * @param clock The clock today is read from.
+     */
+    public DatePolicy(Clock clock) {
+        this(clock, Collections.emptySet());
+    }
+
+    /**
+     * Creates a policy with clinic holidays.
+     *
+     * @param clock    The clock today is read from.
+     * @param holidays The dates the clinic is closed, which must be valid.
+     */
+    public DatePolicy(Clock clock, Collection<Date> holidays) {
+        this.clock = clock;
+        this.holidays = holidays.stream().mapToInt(Date::toEpochDay).sorted().distinct().toArray();
+        this.horizon = new Horizon(LocalDate.now(clock), clock.getZone(), this.holidays);
+    }
+
+    /**
+     * Gets today's date by the clock.
+     *
+     * @return Today's date.
+     */
+    public Date today() {
+        return current().today;
+    }
+
+    /**
+     * Gets the last date within six months of today, the end of the dates that
+     * can be booked.
+     *
+     * @return The last date of the horizon.
+     */
+    public Date horizonEnd() {
+        Horizon current = current();
+        return current.today.plusDays(current.days.length - 1);
+    }
+
+    /**
+     * Checks if a date can be booked. A date is checked for being today or
+     * earlier, then for falling on a weekend, then for being a holiday, then
+     * for being more than six months ahead.
+     *
+     * @param date The appointment date, which must be a valid calendar date.
+     * @return BOOKABLE, or the first check the date fails.
+     */
+    public Result check(Date date) {
+        Horizon current = current();
+        int offset = current.today.daysUntil(date);
+        if (offset <= 0) {
+            return Result.PAST;
+        }
+        if (offset < current.days.length) {
+            return RESULTS[current.days[offset]];
+        }
+        return isWeekend(date.toEpochDay()) ? Result.WEEKEND : Result.BEYOND;
+    }
+
+    /**
+     * Gets the table of the current day, building a new one if the day has
+     * changed since the last check.
+     *
+     * @return The table of today.
+     */
+    private Horizon current() {
+        Horizon current = horizon;
+        long now = clock.millis();
+        if (now < current.start || now >= current.end) {
+            current = new Horizon(LocalDate.ofInstant(Instant.ofEpochMilli(now), clock.getZone()), clock.getZone(),
+                    holidays);
+            horizon = current;
+        }
+        return current;
+    }
+
+    /**
+     * Checks if a day falls on a Saturday or a Sunday.
+     *
+     * @param epochDay The number of days since 1/1/1970.
+     * @return true if the day is on a weekend, false otherwise.
+     */
+    private static boolean isWeekend(int epochDay) {
+        return Date.ofEpochDay(epochDay).getDayOfWeek() >= 6;
+    }
+}
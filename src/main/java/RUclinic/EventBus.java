@@ -0,0 +1,348 @@
+package ruclinic;
+
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The EventBus class publishes every booking, cancellation and reschedule to
+ * the other systems in the process, such as reminders, billing export and
+ * analytics. Events are written into a bounded ring of preallocated slots, and
+ * each consumer reads from its own position at its own pace.
+ * A publisher takes the next sequence number with one atomic increment and
+ * fills the slot of that number, so publishers never wait for each other.
+ * When the ring is full, the policy decides: BLOCK makes the publisher wait
+ * until the slowest consumer has read the slot, and DROP writes over it, so a
+ * consumer that falls a whole ring behind skips the events it missed and
+ * counts them. Under BLOCK a publisher takes a sequence number only once its
+ * slot is free, so a publisher that gives up waiting leaves no gap in the
+ * numbers. A publisher that holds a lock, such as an appointment book in the
+ * middle of a change, offers its events instead: an offer never waits, and an
+ * event the full ring has no room for is counted as missed.
+ * Each slot has a stamp holding the sequence number of the event in it, set
+ * after the event is written, so a consumer can tell a slot that is ready from
+ * one that is being written or was written over.
+ *
+ * @author Paldeep Sekhon
+ * @author Aditya Ponni
+ */
+public final class EventBus {
+    /**
+     * What a publisher does when the slot it needs still holds an event a
+     * consumer has not read.
+     */
+    public enum Policy {
+        BLOCK, DROP
+    }
+
+    private static final long WRITING = -1; // the stamp of a slot that is being written, or was never written
+    private static final long PARK_NANOS = 1000; // how long a waiting thread sleeps between checks
+    private final BookingEvent[] slots;
+    private final AtomicLongArray stamps; // the sequence number of the event in the slot of the same index
+    private final int mask;
+    private final Policy policy;
+    private final AtomicLong claimed = new AtomicLong(); // the next sequence number to publish
+    private final AtomicLong missed = new AtomicLong(); // offers turned away because the ring was full
+    private volatile Subscription[] subscriptions = new Subscription[0];
+
+    /**
+     * A consumer's position in the events. Only one thread should read from a
+     * subscription.
+     */
+    public final class Subscription implements AutoCloseable {
+        private volatile long next; // the sequence number of the next event to read
+        private long dropped; // events written over before they were read
+
+        /**
+         * Creates a subscription that starts at the next event published.
+         *
+         * @param next The sequence number of the next event.
+         */
+        private Subscription(long next) {
+            this.next = next;
+        }
+
+        /**
+         * Reads the next event if it has been published.
+         *
+         * @param into The event to copy the change into.
+         * @return true if an event was read, false if there is none yet.
+         */
+        public boolean poll(BookingEvent into) {
+            while (true) {
+                long sequence = next;
+                int slot = (int) sequence & mask;
+                long stamp = stamps.get(slot);
+                if (stamp == sequence) {
+                    into.copyFrom(slots[slot]);
+                    VarHandle.loadLoadFence();
+                    if (stamps.get(slot) == sequence) {
+                        next = sequence + 1;
+                        return true;
+                    }
+                } else if (stamp > sequence) {
+                    long oldest = claimed.get() - slots.length; // the oldest event that may still be in the ring
+                    dropped += oldest - sequence;
+                    next = oldest;
+                    continue;
+                }
+                return false; // not published yet, or written over while it was copied and checked again next time
+            }
+        }
+
+        /**
+         * Reads the next event, waiting until it is published.
+         *
+         * @param into The event to copy the change into.
+         * @throws InterruptedException if the thread is interrupted while it
+         *                              waits.
+         */
+        public void take(BookingEvent into) throws InterruptedException {
+            while (!poll(into)) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        }
+
+        /**
+         * Gets the number of events this consumer missed because it fell a
+         * whole ring behind under the DROP policy.
+         *
+         * @return The number of events missed.
+         */
+        public long getDropped() {
+            return dropped;
+        }
+
+        /**
+         * Stops the subscription, so publishers no longer wait for it.
+         */
+        @Override
+        public void close() {
+            unsubscribe(this);
+        }
+    }
+
+    /**
+     * Creates a bus with a ring of a number of slots.
+     *
+     * @param capacity The number of events the ring holds, a power of two.
+     * @param policy   What a publisher does when the ring is full.
+     * @throws IllegalArgumentException if the capacity is not a power of two.
+     */
+    public EventBus(int capacity, Policy policy) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("The capacity must be a power of two: " + capacity);
+        }
+        this.slots = new BookingEvent[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new BookingEvent();
+        }
+        this.stamps = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            stamps.set(i, WRITING);
+        }
+        this.mask = capacity - 1;
+        this.policy = policy;
+    }
+
+    /**
+     * Publishes a change. Under BLOCK, the publisher waits while the ring is
+     * full; if the thread is interrupted while it waits, it stops waiting and
+     * writes over the oldest event, which the slowest consumer counts as
+     * dropped, and the thread stays interrupted.
+     *
+     * @param kind        The kind of change.
+     * @param appointment The appointment after the change.
+     * @param from        The timeslot before a reschedule, or null.
+     */
+    public void publish(BookingEvent.Kind kind, Appointment appointment, Timeslot from) {
+        long sequence;
+        if (policy == Policy.BLOCK) {
+            try {
+                sequence = claim(Long.MAX_VALUE);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                sequence = claimed.getAndIncrement();
+            }
+        } else {
+            sequence = claimed.getAndIncrement();
+        }
+        write(sequence, kind, appointment, from);
+    }
+
+    /**
+     * Publishes a change if there is room for it within a time limit. Under
+     * DROP there is always room.
+     *
+     * @param kind        The kind of change.
+     * @param appointment The appointment after the change.
+     * @param from        The timeslot before a reschedule, or null.
+     * @param timeout     How long to wait for the slowest consumer.
+     * @param unit        The unit of the timeout.
+     * @return true if the change was published, false if the ring was still
+     *         full when the time ran out.
+     * @throws InterruptedException if the thread is interrupted while it
+     *                              waits.
+     */
+    public boolean tryPublish(BookingEvent.Kind kind, Appointment appointment, Timeslot from, long timeout,
+            TimeUnit unit) throws InterruptedException {
+        long sequence = policy == Policy.BLOCK ? claim(unit.toNanos(timeout)) : claimed.getAndIncrement();
+        if (sequence < 0) {
+            return false;
+        }
+        write(sequence, kind, appointment, from);
+        return true;
+    }
+
+    /**
+     * Publishes a change if its slot is free right now, without ever waiting,
+     * so it can be called while holding a lock. Under BLOCK a change the full
+     * ring has no room for is not published and is counted as missed; under
+     * DROP there is always room.
+     *
+     * @param kind        The kind of change.
+     * @param appointment The appointment after the change.
+     * @param from        The timeslot before a reschedule, or null.
+     * @return true if the change was published, false if it was missed.
+     */
+    public boolean offer(BookingEvent.Kind kind, Appointment appointment, Timeslot from) {
+        long sequence = policy == Policy.BLOCK ? claimFree() : claimed.getAndIncrement();
+        if (sequence < 0) {
+            missed.incrementAndGet();
+            return false;
+        }
+        write(sequence, kind, appointment, from);
+        return true;
+    }
+
+    /**
+     * Starts reading the events published from now on.
+     *
+     * @return The new subscription.
+     */
+    public synchronized Subscription subscribe() {
+        Subscription subscription = new Subscription(claimed.get());
+        Subscription[] current = subscriptions;
+        Subscription[] added = Arrays.copyOf(current, current.length + 1);
+        added[current.length] = subscription;
+        subscriptions = added;
+        return subscription;
+    }
+
+    /**
+     * Gets the number of events published so far.
+     *
+     * @return The number of events.
+     */
+    public long getPublished() {
+        return claimed.get();
+    }
+
+    /**
+     * Gets the number of offered changes that were not published because the
+     * ring was full under BLOCK.
+     *
+     * @return The number of changes missed.
+     */
+    public long getMissed() {
+        return missed.get();
+    }
+
+    /**
+     * Removes a subscription.
+     *
+     * @param subscription The subscription to remove.
+     */
+    private synchronized void unsubscribe(Subscription subscription) {
+        Subscription[] current = subscriptions;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == subscription) {
+                Subscription[] removed = new Subscription[current.length - 1];
+                System.arraycopy(current, 0, removed, 0, i);
+                System.arraycopy(current, i + 1, removed, i, current.length - i - 1);
+                subscriptions = removed;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Takes the next sequence number once its slot has been read by every
+     * consumer. A subscription that is closed no longer holds the publishers
+     * back.
+     *
+     * @param timeout The longest time to wait in nanoseconds, Long.MAX_VALUE
+     *                for no limit.
+     * @return The sequence number, or -1 if the time ran out.
+     * @throws InterruptedException if the thread is interrupted while it
+     *                              waits.
+     */
+    private long claim(long timeout) throws InterruptedException {
+        long start = System.nanoTime();
+        while (true) {
+            long sequence = claimFree();
+            if (sequence >= 0) {
+                return sequence;
+            } else if (Thread.interrupted()) {
+                throw new InterruptedException();
+            } else if (System.nanoTime() - start >= timeout) {
+                return -1;
+            }
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+
+    /**
+     * Takes the next sequence number if its slot has been read by every
+     * consumer, without waiting.
+     *
+     * @return The sequence number, or -1 if the ring is full.
+     */
+    private long claimFree() {
+        while (true) {
+            long sequence = claimed.get();
+            if (sequence - slots.length >= slowest(sequence)) {
+                return -1;
+            }
+            if (claimed.compareAndSet(sequence, sequence + 1)) {
+                return sequence;
+            }
+        }
+    }
+
+    /**
+     * Writes an event into the slot of its sequence number and marks it ready.
+     *
+     * @param sequence    The sequence number of the event.
+     * @param kind        The kind of change.
+     * @param appointment The appointment after the change.
+     * @param from        The timeslot before a reschedule, or null.
+     */
+    private void write(long sequence, BookingEvent.Kind kind, Appointment appointment, Timeslot from) {
+        int slot = (int) sequence & mask;
+        stamps.set(slot, WRITING);
+        VarHandle.storeStoreFence();
+        slots[slot].set(sequence, kind, appointment, from);
+        stamps.set(slot, sequence);
+    }
+
+    /**
+     * Gets the position of the consumer furthest behind.
+     *
+     * @param none The position to return when there are no consumers.
+     * @return The smallest sequence number a consumer has yet to read.
+     */
+    private long slowest(long none) {
+        long slowest = none;
+        for (Subscription subscription : subscriptions) {
+            slowest = Math.min(slowest, subscription.next);
+        }
+        return slowest;
+    }
+}
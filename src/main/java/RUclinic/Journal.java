@@ -0,0 +1,525 @@
+package ruclinic;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * The Journal class is a write-ahead log of the changes made to a
+ * BookingService, so the appointment book survives a crash. Every booking,
+ * cancellation and reschedule is appended as one record before the client is
+ * told it succeeded, and so is every appointment a sweep retires into the
+ * visit history.
+ * Records are appended to a buffer in memory, and a client then waits until its
+ * record is on disk. The first waiting client writes the whole buffer and syncs
+ * the file once for every record in it while the others wait, so many clients
+ * share one disk sync (group commit).
+ * Each record is written as its length, a CRC32 checksum and its fields. A
+ * record cut short by a crash fails the check and is dropped when the journal
+ * is replayed.
+ * A position in the journal counts the bytes of every record ever appended.
+ * Once a snapshot holds the changes before a position, the journal is
+ * compacted: the records from that position on are copied into a new file
+ * whose header says which position it starts at, and the new file is moved
+ * over the old one, so the file only holds the changes since the last
+ * snapshot and positions stay the same. A file written before journals had a
+ * header starts at position 0.
+ *
+ * @author Paldeep Sekhon
+ * @author Aditya Ponni
+ */
+public class Journal implements AutoCloseable {
+    static final byte BOOK = 1;
+    static final byte CANCEL = 2;
+    static final byte RESCHEDULE = 3;
+    static final byte RETIRE = 4; // an appointment of a past day that became a visit
+
+    private static final int HEADER_SIZE = 8; // record length and checksum
+    private static final int MAX_RECORD_SIZE = 1 << 16;
+    private static final int INITIAL_BUFFER_SIZE = 1 << 16;
+    private static final int FILE_MAGIC = 0x5255434A; // "RUCJ", larger than any record length
+    private static final int FILE_HEADER_SIZE = 12; // magic and the position the file starts at
+
+    private final Path path;
+    private FileChannel channel; // replaced only by compact, while no other thread is syncing
+    private long base; // the position of the first record in the file, guarded by this
+    private int start; // the offset of the first record in the file, guarded by this
+    private final CRC32 checksum; // guarded by this
+    private ByteBuffer pending; // records not yet written, guarded by this
+    private ByteBuffer spare; // empty buffer swapped in while pending is written, guarded by this
+    private long appended; // bytes appended, including pending records, guarded by this
+    private long durable; // bytes synced to disk, guarded by this
+    private boolean syncing; // true while a thread writes and syncs, guarded by this
+    private IOException failure; // the error that stopped the journal, guarded by this
+    private boolean replayed; // true once the records on disk have been replayed, guarded by this
+
+    /**
+     * Opens a journal file, creating it if it does not exist. The records in the
+     * file must be replayed before new records are appended.
+     *
+     * @param path The path of the journal file.
+     * @throws IOException if the file cannot be opened.
+     */
+    public Journal(Path path) throws IOException {
+        this.path = path;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        checksum = new CRC32();
+        pending = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        spare = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    }
+
+    /**
+     * Appends a change to the journal buffer. The change is not durable until
+     * sync returns for the returned position.
+     *
+     * @param type        BOOK, CANCEL, RESCHEDULE or RETIRE.
+     * @param appointment The appointment that was changed, as it was before a
+     *                    reschedule.
+     * @param timeslot    The new timeslot of a reschedule, or the appointment's
+     *                    own timeslot otherwise.
+     * @return The journal position just after the record.
+     * @throws IllegalStateException if the journal has not been replayed.
+     */
+    public synchronized long append(byte type, Appointment appointment, Timeslot timeslot) {
+        if (!replayed) {
+            throw new IllegalStateException("Journal has not been replayed.");
+        }
+        Profile patient = appointment.getPatient();
+        byte[] fname = patient.getFname().getBytes(StandardCharsets.UTF_8);
+        byte[] lname = patient.getLname().getBytes(StandardCharsets.UTF_8);
+        int length = 16 + fname.length + lname.length;
+        if (length > MAX_RECORD_SIZE) {
+            throw new IllegalArgumentException("Patient name is too long for the journal.");
+        }
+        if (pending.remaining() < HEADER_SIZE + length) {
+            ByteBuffer larger = ByteBuffer.allocate(
+                    Math.max(pending.capacity() * 2, pending.position() + HEADER_SIZE + length));
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+        int start = pending.position();
+        pending.putInt(length).putInt(0);
+        pending.put(type)
+                .putInt(appointment.getDate().toEpochDay())
+                .put((byte) appointment.getTimeslot().ordinal())
+                .put((byte) appointment.getProvider().ordinal())
+                .put((byte) timeslot.ordinal())
+                .putInt(patient.getDob().toEpochDay())
+                .putShort((short) fname.length).put(fname)
+                .putShort((short) lname.length).put(lname);
+        checksum.reset();
+        checksum.update(pending.array(), start + HEADER_SIZE, length);
+        pending.putInt(start + 4, (int) checksum.getValue());
+        appended += HEADER_SIZE + length;
+        return appended;
+    }
+
+    /**
+     * Waits until the journal is on disk up to a position. If no other thread
+     * is writing, this thread writes every pending record and syncs the file
+     * once for all of them.
+     *
+     * @param position A position returned by append.
+     * @throws IOException if the journal could not be written.
+     */
+    public void sync(long position) throws IOException {
+        ByteBuffer batch;
+        long end;
+        synchronized (this) {
+            while (durable < position && syncing && failure == null) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for the journal.", e);
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            if (durable >= position) {
+                return;
+            }
+            syncing = true;
+            batch = pending;
+            pending = spare;
+            end = appended;
+        }
+        IOException error = null;
+        try {
+            batch.flip();
+            while (batch.hasRemaining()) {
+                channel.write(batch);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            error = e;
+        }
+        synchronized (this) {
+            batch.clear();
+            spare = batch;
+            syncing = false;
+            if (error == null) {
+                durable = end;
+            } else {
+                failure = error;
+            }
+            notifyAll();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Gets the position just after the last record appended so far.
+     *
+     * @return The journal position.
+     */
+    public synchronized long position() {
+        return appended;
+    }
+
+    /**
+     * Applies the records in the journal from a position on to a booking
+     * service, in the order they were appended. A damaged record at the end of
+     * the file, and everything after it, is cut off, and new records are
+     * appended after the last good one. The service must not write to this
+     * journal while the records are replayed.
+     *
+     * @param service The booking service to rebuild.
+     * @param history The medical record retired appointments are added to as
+     *                visits, or null to drop them.
+     * @param from    The position of the first record to replay, 0 for all.
+     * @throws IOException if the journal cannot be read.
+     */
+    public synchronized void replay(BookingService service, MedicalRecord history, long from) throws IOException {
+        readFileHeader();
+        long end = read(service, history, Math.max(base, Math.min(from, base + channel.size() - start)));
+        channel.truncate(offset(end));
+        channel.position(offset(end));
+        appended = end;
+        durable = end;
+        replayed = true;
+    }
+
+    /**
+     * Drops the records before a position, once a snapshot holds their
+     * changes. The records from the position on are copied into a new file
+     * that is synced and then moved over the journal, so a crash leaves either
+     * the old file or the new one. Records appended meanwhile stay pending and
+     * are written to the new file.
+     *
+     * @param below The position of the first record to keep. Only records
+     *              already on disk are dropped.
+     * @throws IOException if the new file cannot be written; the journal then
+     *                     keeps its old file.
+     */
+    public void compact(long below) throws IOException {
+        long first;
+        long from; // the offset of the first record kept in the old file
+        long to; // the offset just after the last record on disk in the old file
+        synchronized (this) {
+            while (syncing && failure == null) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for the journal.", e);
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            first = Math.min(below, durable);
+            if (!replayed || first <= base) {
+                return;
+            }
+            from = offset(first);
+            to = offset(durable);
+            syncing = true; // no other thread writes to the file while it is copied
+        }
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        FileChannel compacted = null;
+        IOException error = null;
+        try {
+            compacted = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE).putInt(FILE_MAGIC).putLong(first);
+            header.flip();
+            while (header.hasRemaining()) {
+                compacted.write(header);
+            }
+            while (from < to) {
+                from += channel.transferTo(from, to - from, compacted);
+            }
+            compacted.force(true);
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            error = e;
+            if (compacted != null) {
+                compacted.close();
+            }
+            Files.deleteIfExists(temporary);
+        }
+        FileChannel old = channel;
+        synchronized (this) {
+            if (error == null) {
+                channel = compacted;
+                base = first;
+                start = FILE_HEADER_SIZE;
+            }
+            syncing = false;
+            notifyAll();
+        }
+        if (error != null) {
+            throw error;
+        }
+        old.close();
+    }
+
+    /**
+     * Writes the pending records and closes the journal file.
+     *
+     * @throws IOException if the journal cannot be written or closed.
+     */
+    @Override
+    public void close() throws IOException {
+        long position;
+        synchronized (this) {
+            position = appended;
+        }
+        try {
+            sync(position);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Reads the header of the file to learn the position it starts at. A file
+     * too short to hold a header or a record is started over with a header for
+     * position 0, and a file without a header starts at position 0.
+     *
+     * @throws IOException if the file cannot be read or written.
+     */
+    private void readFileHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        if (channel.size() < FILE_HEADER_SIZE) {
+            channel.truncate(0);
+            header.putInt(FILE_MAGIC).putLong(0).flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+            base = 0;
+            start = FILE_HEADER_SIZE;
+            return;
+        }
+        while (header.hasRemaining()) {
+            channel.read(header, header.position());
+        }
+        if (header.getInt(0) == FILE_MAGIC) {
+            base = header.getLong(4);
+            start = FILE_HEADER_SIZE;
+        } else {
+            base = 0;
+            start = 0;
+        }
+    }
+
+    /**
+     * Gets the offset in the file of a journal position.
+     *
+     * @param position A position at or after the first record in the file.
+     * @return The offset of the position in the file.
+     */
+    private long offset(long position) {
+        return start + position - base;
+    }
+
+    /**
+     * Reads the records from a position up to the first damaged or incomplete
+     * record.
+     *
+     * @param service The booking service the records are applied to.
+     * @param history The medical record retired appointments are added to, or
+     *                null.
+     * @param from    The position of the first record.
+     * @return The position just after the last good record.
+     * @throws IOException if the file cannot be read.
+     */
+    private long read(BookingService service, MedicalRecord history, long from) throws IOException {
+        long size = base + channel.size() - start; // the position just after the last byte of the file
+        InputStream stream = new BufferedInputStream(Channels.newInputStream(channel.position(offset(from))),
+                1 << 16);
+        DataInputStream in = new DataInputStream(stream);
+        MedicalRecord patients = new MedicalRecord(); // shares one profile per patient
+        byte[] record = new byte[MAX_RECORD_SIZE];
+        long position = from;
+        while (size - position >= HEADER_SIZE) {
+            int length;
+            int sum;
+            try {
+                length = in.readInt();
+                sum = in.readInt();
+                if (length < 16 || length > MAX_RECORD_SIZE || size - position - HEADER_SIZE < length) {
+                    break;
+                }
+                in.readFully(record, 0, length);
+            } catch (EOFException e) {
+                break;
+            }
+            checksum.reset();
+            checksum.update(record, 0, length);
+            if ((int) checksum.getValue() != sum) {
+                break;
+            }
+            position += HEADER_SIZE + length;
+            apply(service, history, patients, ByteBuffer.wrap(record, 0, length), position);
+        }
+        channel.position(offset(position));
+        return position;
+    }
+
+    /**
+     * Decodes one record and applies it to a booking service. A retired
+     * appointment the service still held becomes a visit of its patient.
+     *
+     * @param service  The booking service to change.
+     * @param history  The medical record retired appointments are added to, or
+     *                 null.
+     * @param patients The patients seen so far in the journal.
+     * @param record   The fields of the record.
+     * @param position The journal position just after the record.
+     */
+    private static void apply(BookingService service, MedicalRecord history, MedicalRecord patients,
+            ByteBuffer record, long position) {
+        byte type = record.get();
+        Date date = Date.ofEpochDay(record.getInt());
+        Timeslot timeslot = Timeslot.values()[record.get()];
+        Provider provider = Provider.values()[record.get()];
+        Timeslot newTimeslot = Timeslot.values()[record.get()];
+        Date dob = Date.ofEpochDay(record.getInt());
+        String fname = readName(record);
+        String lname = readName(record);
+        Profile patient = patients.register(fname, lname, dob).getProfile();
+        Appointment appointment = new Appointment(date, timeslot, patient, provider);
+        if (service.restore(type, appointment, newTimeslot, position) && type == RETIRE && history != null) {
+            history.addVisit(appointment);
+        }
+    }
+
+    /**
+     * Reads a length-prefixed UTF-8 name from a record.
+     *
+     * @param record The fields of the record.
+     * @return The name.
+     */
+    private static String readName(ByteBuffer record) {
+        int length = record.getShort() & 0xFFFF;
+        String name = new String(record.array(), record.arrayOffset() + record.position(), length,
+                StandardCharsets.UTF_8);
+        record.position(record.position() + length);
+        return name;
+    }
+    /**
+     * Main method for checking that a journal recovers a booking service. It
+     * journals some changes, damages the end of the file in two ways and
+     * replays it after each, printing what was restored.
+     *
+     * @param args Command line arguments (not used here).
+     * @throws IOException if the temporary journal cannot be used.
+     */
+    public static void main(String[] args) throws IOException {
+        Path path = Files.createTempFile("journal", ".log");
+        Profile patient = new Profile("John", "Doe", new Date(1990, 1, 1));
+        Appointment past = new Appointment(new Date(2026, 11, 2), Timeslot.SLOT1, patient, Provider.PATEL);
+        Appointment canceled = new Appointment(new Date(2026, 12, 1), Timeslot.SLOT2, patient, Provider.PATEL);
+        Appointment moved = new Appointment(new Date(2026, 12, 2), Timeslot.SLOT3, patient, Provider.KAUR);
+        long retired; // the position of the RETIRE record
+        long good; // the position just after the last record
+        try (Journal journal = new Journal(path)) {
+            BookingService service = new BookingService(journal);
+            service.book(past);
+            service.book(canceled);
+            service.book(moved);
+            service.cancel(canceled.getDate(), canceled.getTimeslot(), patient);
+            service.reschedule(moved, Timeslot.SLOT5);
+            retired = journal.position();
+            service.retire(new Date(2026, 11, 3));
+            good = journal.position();
+        }
+        byte[] file = Files.readAllBytes(path);
+
+        // Test Case 1: Replay of an intact journal, with the retired appointment as a visit
+        printReplay("Test Case 1", path, patient, good); // Should print 1 appointment, 1 visit, true
+        BookingService restored = restore(path, new MedicalRecord());
+        System.out.println("Moved to SLOT5: " + (restored.find(moved.getDate(), Timeslot.SLOT5, patient) != null));
+        // Should print true
+
+        // Test Case 2: A record torn by a crash at the end of the file is cut off
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(file, FILE_HEADER_SIZE + (int) retired, (int) (good - retired) / 2));
+        }
+        printReplay("Test Case 2", path, patient, good); // Should print 1 appointment, 1 visit, true
+
+        // Test Case 3: A record whose checksum does not match is dropped, so the appointment is not retired
+        int corrupt = FILE_HEADER_SIZE + (int) good - 1; // the last byte of the RETIRE record
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] { (byte) ~file[corrupt] }), corrupt);
+        }
+        printReplay("Test Case 3", path, patient, retired); // Should print 2 appointments, 0 visits, true
+
+        Files.delete(path);
+    }
+
+    /**
+     * Replays a journal into a new booking service and prints the number of
+     * appointments, the number of visits of a patient and whether the file now
+     * ends at a position.
+     *
+     * @param name    The name of the test case.
+     * @param path    The path of the journal file.
+     * @param patient The patient whose visits are counted.
+     * @param end     The position the file should end at.
+     * @throws IOException if the journal cannot be replayed.
+     */
+    private static void printReplay(String name, Path path, Profile patient, long end) throws IOException {
+        MedicalRecord history = new MedicalRecord();
+        BookingService service = restore(path, history);
+        Patient visited = history.findPatient(patient);
+        System.out.println(name + " - Appointments: " + service.size() + ", visits: "
+                + (visited == null ? 0 : visited.getVisitCount()) + ", file ends after the last good record: "
+                + (Files.size(path) == FILE_HEADER_SIZE + end));
+    }
+
+    /**
+     * Rebuilds a booking service from a journal file alone.
+     *
+     * @param path    The path of the journal file.
+     * @param history The medical record retired appointments are added to.
+     * @return The rebuilt booking service.
+     * @throws IOException if the journal cannot be replayed.
+     */
+    private static BookingService restore(Path path, MedicalRecord history) throws IOException {
+        BookingService service = new BookingService();
+        try (Journal journal = new Journal(path)) {
+            service.recover(journal, history);
+        }
+        return service;
+    }
+}
@@ -0,0 +1,113 @@
+package ruclinic;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The LatencyHistogram class counts durations in log-linear buckets: every
+ * power of two is split into 32 buckets, so a percentile is read within about
+ * 3% of the true value with a fixed array of counters. Recording a duration
+ * is a few shifts and one atomic increment, so many threads can record at
+ * once without locks.
+ *
+ * @author Paldeep Sekhon
+ * @author Aditya Ponni
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 5; // 32 buckets per power of two
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BITS) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records one duration.
+     *
+     * @param nanos The duration in nanoseconds; negative durations count as 0.
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        counts.incrementAndGet(bucketOf(value));
+        if (value > max.get()) {
+            max.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    /**
+     * Gets the number of durations recorded.
+     *
+     * @return The count.
+     */
+    public long count() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Gets the longest duration recorded.
+     *
+     * @return The maximum in nanoseconds, 0 if nothing was recorded.
+     */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * Gets a percentile of the durations, as the upper end of the bucket it
+     * falls in, but never more than the maximum.
+     *
+     * @param percent The percentile, from 0 to 100, such as 99.9.
+     * @return The duration in nanoseconds, 0 if nothing was recorded.
+     */
+    public long percentile(double percent) {
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percent / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Gets the bucket of a duration. Durations below 64 get a bucket each;
+     * above that, a bucket covers 1/32 of a power of two.
+     *
+     * @param value The duration, not negative.
+     * @return The bucket index.
+     */
+    private static int bucketOf(long value) {
+        int shift = Math.max(0, Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BITS);
+        return (shift << SUB_BITS) + (int) (value >>> shift);
+    }
+
+    /**
+     * Gets the largest duration that falls in a bucket.
+     *
+     * @param bucket The bucket index.
+     * @return The upper end of the bucket.
+     */
+    private static long upperBound(int bucket) {
+        if (bucket < 2 * SUB_COUNT) {
+            return bucket;
+        }
+        int shift = (bucket >> SUB_BITS) - 1;
+        long mantissa = bucket - ((long) shift << SUB_BITS);
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
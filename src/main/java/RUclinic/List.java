@@ -1,17 +1,27 @@
 package ruclinic;
 
+import java.util.Arrays;
+
 /**
  * The List class manages a dynamic array of Appointment objects for the
- * RUclinic system.
+ * RUclinic system. It is not thread-safe; BookingService shares appointments
+ * between threads.
  * 
  * @author Paldeep Sekhon
  * @author Aditya Ponni
  */
-public class List {
+public class List implements AppointmentBook {
     private Appointment[] appointments;
     private int size; // number of appointments in the array
+    private Occupancy occupancy; // booked timeslots per provider and day
+    private int[] index; // hash buckets holding array position + 1, 0 marks an empty bucket
+    private OrderedIndex byAppointment; // appointments by date/timeslot/provider
+    private OrderedIndex byPatient; // appointments by patient/date/timeslot
+    private OrderedIndex byLocation; // appointments by county/date/timeslot
+    private EventBus events; // where changes are published, or null
     private static final int NOT_FOUND = -1;
     private static final int INITIAL_CAPACITY = 4;
+    private static final int INITIAL_INDEX_CAPACITY = 16;
 
     /**
      * Constructs an empty list of appointments with an initial capacity.
@@ -19,6 +29,11 @@ public class List {
     public List() {
         appointments = new Appointment[INITIAL_CAPACITY];
         size = 0;
+        occupancy = new Occupancy();
+        index = new int[INITIAL_INDEX_CAPACITY];
+        byAppointment = new OrderedIndex(List::compareSlots);
+        byPatient = new OrderedIndex(List::comparePatients);
+        byLocation = new OrderedIndex(List::compareLocations);
     }
 
     /**
@@ -28,21 +43,118 @@ public class List {
      * @return The index of the appointment if found, -1 otherwise.
      */
     private int find(Appointment appointment) {
-        for (int i = 0; i < size; i++) {
-            if (appointments[i].equals(appointment)) {
-                return i;
+        int mask = index.length - 1;
+        for (int i = Probing.bucket(appointment.hashCode(), index.length); index[i] != 0; i = (i + 1) & mask) {
+            if (appointments[index[i] - 1].equals(appointment)) {
+                return index[i] - 1;
             }
         }
         return NOT_FOUND;
     }
 
     /**
-     * Increases the size of the appointment array by 4.
+     * Finds the appointment a patient has at a timeslot on the given date,
+     * regardless of the provider.
+     * 
+     * @param date     The date of the appointment.
+     * @param timeslot The timeslot of the appointment.
+     * @param patient  The profile of the patient.
+     * @return The appointment if found, or null if not found.
+     */
+    @Override
+    public Appointment find(Date date, Timeslot timeslot, Profile patient) {
+        int mask = index.length - 1;
+        for (int i = Probing.bucket(Appointment.hash(date, timeslot, patient), index.length); index[i] != 0; i = (i + 1) & mask) {
+            Appointment appointment = appointments[index[i] - 1];
+            if (appointment.getTimeslot() == timeslot && appointment.getDate().equals(date)
+                    && appointment.getPatient().equals(patient)) {
+                return appointment;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the hash code of the appointment at an array position.
+     * 
+     * @param position The position of an appointment in the array.
+     * @return The hash code of the appointment.
+     */
+    private int hashAt(int position) {
+        return appointments[position].hashCode();
+    }
+
+    /**
+     * Finds the bucket of the index that refers to an array position.
+     * 
+     * @param position The position of an appointment in the array.
+     * @return The bucket holding the position.
+     */
+    private int bucketOf(int position) {
+        return Probing.bucketOf(index, position, hashAt(position));
+    }
+
+    /**
+     * Adds an array position to the index, doubling the index first if it is
+     * more than half full.
+     * 
+     * @param position The position of an appointment in the array.
+     */
+    private void indexPosition(int position) {
+        if (size * 2 > index.length) {
+            index = new int[index.length * 2];
+            for (int i = 0; i < size; i++) {
+                if (i != position) {
+                    place(i);
+                }
+            }
+        }
+        place(position);
+    }
+
+    /**
+     * Stores an array position in the first free bucket of its probe sequence.
+     * 
+     * @param position The position of an appointment in the array.
+     */
+    private void place(int position) {
+        Probing.place(index, position, hashAt(position));
+    }
+
+    /**
+     * Empties a bucket of the index, shifting later entries of the same probe
+     * run back so lookups never stop early.
+     * 
+     * @param hole The bucket to empty.
+     */
+    private void unindex(int hole) {
+        Probing.unindex(index, hole, this::hashAt);
+    }
+
+    /**
+     * Doubles the size of the appointment array, so adding n appointments
+     * copies O(n) references in total.
      */
     private void grow() {
-        Appointment[] newAppointments = new Appointment[appointments.length + 4];
-        System.arraycopy(appointments, 0, newAppointments, 0, appointments.length);
-        appointments = newAppointments;
+        ensureCapacity(appointments.length * 2);
+    }
+
+    /**
+     * Sizes the appointment array and the index for a number of appointments,
+     * so adding up to that many grows neither of them.
+     * 
+     * @param capacity The number of appointments the list should hold.
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity > appointments.length) {
+            appointments = Arrays.copyOf(appointments, Math.max(capacity, appointments.length * 2));
+        }
+        if (capacity * 2 > index.length) {
+            index = new int[Integer.highestOneBit(capacity * 2 - 1) << 1];
+            for (int i = 0; i < size; i++) {
+                place(i);
+            }
+        }
     }
 
     /**
@@ -66,30 +178,311 @@ public class List {
             grow();
         }
         appointments[size++] = appointment;
+        indexPosition(size - 1);
+        addToViews(appointment);
+        occupancy.book(appointment.getProvider(), appointment.getDate(), appointment.getTimeslot());
     }
 
     /**
-     * Removes an appointment from the list. The array elements are shifted to fill
-     * the gap.
+     * Removes an appointment from the list. The last appointment in the array is
+     * moved into the gap.
      * 
      * @param appointment The appointment to remove from the list.
      */
     public void remove(Appointment appointment) {
-        int index = find(appointment);
-        if (index != NOT_FOUND) {
-            // Shift elements to the left to fill the gap
-            for (int i = index; i < size - 1; i++) {
-                appointments[i] = appointments[i + 1];
+        int position = find(appointment);
+        if (position != NOT_FOUND) {
+            unindex(bucketOf(position));
+            int last = size - 1;
+            if (position != last) {
+                index[bucketOf(last)] = position + 1;
+                appointments[position] = appointments[last];
             }
             appointments[--size] = null; // Clear the last element
+            removeFromViews(appointment);
+            occupancy.release(appointment.getProvider(), appointment.getDate(), appointment.getTimeslot());
+        }
+    }
+
+    /**
+     * Books an appointment if the patient does not already have it and the
+     * provider is free at its timeslot.
+     * 
+     * @param appointment The appointment to book.
+     * @return BOOKED if the appointment was added, DUPLICATE if the list already
+     *         has it, or UNAVAILABLE if the provider is taken at the timeslot.
+     */
+    @Override
+    public BookingResult book(Appointment appointment) {
+        if (contains(appointment)) {
+            return BookingResult.DUPLICATE;
+        }
+        if (isBooked(appointment.getProvider(), appointment.getDate(), appointment.getTimeslot())) {
+            return BookingResult.UNAVAILABLE;
+        }
+        add(appointment);
+        publish(BookingEvent.Kind.BOOK, appointment, null);
+        return BookingResult.BOOKED;
+    }
+
+    /**
+     * Books a batch of appointments at once. The batch is sorted on the packed
+     * date/timeslot/provider keys, so every appointment is checked against the
+     * list and against the rest of the batch in one pass: of the appointments
+     * that share a key, only the first in the batch can be booked, and the
+     * others are duplicates of it or find the provider taken, just as booking
+     * the batch one appointment at a time would find them. The accepted
+     * appointments are added after the storage is sized once for all of them.
+     * 
+     * @param batch The appointments to book.
+     * @return The result of each appointment, at the same position as in the
+     *         batch.
+     */
+    @Override
+    public BookingResult[] bookAll(Appointment[] batch) {
+        BookingResult[] results = new BookingResult[batch.length];
+        long[] order = new long[batch.length]; // key in the high half, batch position in the low half
+        for (int i = 0; i < batch.length; i++) {
+            order[i] = batch[i].key() << 32 | i;
+        }
+        Arrays.sort(order);
+        int accepted = 0;
+        long taken = -1; // the key of the last appointment of the batch that was accepted
+        Appointment first = null; // that appointment
+        for (int i = 0; i < order.length; i++) {
+            int position = (int) order[i];
+            Appointment appointment = batch[position];
+            if (order[i] >>> 32 == taken) {
+                results[position] = appointment.equals(first) ? BookingResult.DUPLICATE
+                        : BookingResult.UNAVAILABLE;
+            } else if (contains(appointment)) {
+                results[position] = BookingResult.DUPLICATE;
+            } else if (isBooked(appointment.getProvider(), appointment.getDate(), appointment.getTimeslot())) {
+                results[position] = BookingResult.UNAVAILABLE;
+            } else {
+                results[position] = BookingResult.BOOKED;
+                taken = order[i] >>> 32;
+                first = appointment;
+                order[accepted++] = position; // only slots already read are reused
+            }
+        }
+        ensureCapacity(size + accepted);
+        for (int i = 0; i < accepted; i++) {
+            add(batch[(int) order[i]]);
+        }
+        for (int i = 0; i < accepted; i++) {
+            publish(BookingEvent.Kind.BOOK, batch[(int) order[i]], null);
+        }
+        return results;
+    }
+
+    /**
+     * Cancels the appointment a patient has at a timeslot on the given date.
+     * 
+     * @param date     The date of the appointment.
+     * @param timeslot The timeslot of the appointment.
+     * @param patient  The profile of the patient.
+     * @return The canceled appointment, or null if there was none.
+     */
+    @Override
+    public Appointment cancel(Date date, Timeslot timeslot, Profile patient) {
+        Appointment appointment = find(date, timeslot, patient);
+        if (appointment != null) {
+            remove(appointment);
+            publish(BookingEvent.Kind.CANCEL, appointment, null);
+        }
+        return appointment;
+    }
+
+    /**
+     * Cancels every appointment that matches a range query. The appointments
+     * are found by walking only the range of the query in its ordered view,
+     * such as one patient's part of the patient view, so canceling k
+     * appointments costs O(k log n) however many other appointments there are.
+     * 
+     * @param query The dates and conditions of the appointments to cancel.
+     * @return The canceled appointments in date/timeslot/provider order.
+     */
+    @Override
+    public Appointment[] cancelAll(RangeQuery query) {
+        Appointment[] canceled = removeAll(query);
+        for (Appointment appointment : canceled) {
+            publish(BookingEvent.Kind.CANCEL, appointment, null);
+        }
+        return canceled;
+    }
+
+    /**
+     * Removes every appointment dated before a day, walking only those days at
+     * the start of the date view. Nothing is published.
+     * 
+     * @param day The first day to keep.
+     * @return The removed appointments in date/timeslot/provider order.
+     */
+    @Override
+    public Appointment[] retire(Date day) {
+        return removeAll(RangeQuery.before(day));
+    }
+
+    /**
+     * Removes every appointment that matches a range query.
+     * 
+     * @param query The dates and conditions of the appointments to remove.
+     * @return The removed appointments in date/timeslot/provider order.
+     */
+    private Appointment[] removeAll(RangeQuery query) {
+        Appointment[] removed = new Appointment[4];
+        int count = 0;
+        for (Appointment appointment : range(query)) {
+            if (count == removed.length) {
+                removed = Arrays.copyOf(removed, count * 2);
+            }
+            removed[count++] = appointment;
+        }
+        for (int i = 0; i < count; i++) {
+            remove(removed[i]);
+        }
+        return Arrays.copyOf(removed, count);
+    }
+
+    /**
+     * Fills an empty list with appointments whose orders are already known, as
+     * when a snapshot is loaded. The indexes are built in one pass each instead
+     * of one insertion per appointment.
+     * 
+     * @param bySlot     The appointments in date/timeslot/provider order; the
+     *                   array is taken over by the list.
+     * @param byPatient  The same appointments in patient/date/timeslot order.
+     * @param byLocation The same appointments in county/date/timeslot order.
+     * @param count      The number of appointments in each array.
+     * @throws IllegalStateException if the list is not empty.
+     */
+    void load(Appointment[] bySlot, Appointment[] byPatient, Appointment[] byLocation, int count) {
+        if (size != 0) {
+            throw new IllegalStateException("List is not empty.");
+        }
+        appointments = bySlot.length > 0 ? bySlot : appointments;
+        size = count;
+        index = new int[Math.max(INITIAL_INDEX_CAPACITY, Integer.highestOneBit(Math.max(count, 1)) * 4)];
+        for (int i = 0; i < count; i++) {
+            place(i);
+            occupancy.book(bySlot[i].getProvider(), bySlot[i].getDate(), bySlot[i].getTimeslot());
+        }
+        byAppointment.addAll(bySlot, count);
+        this.byPatient.addAll(byPatient, count);
+        this.byLocation.addAll(byLocation, count);
+    }
+
+    /**
+     * Moves an appointment in the list to a new timeslot on the same date if
+     * its provider is free then. The appointment is replaced by a new one at
+     * the new timeslot, so appointments already handed out never change.
+     * Appointments must be rescheduled through the list so its indexes stay
+     * consistent.
+     * 
+     * @param appointment The appointment to reschedule.
+     * @param timeslot    The new timeslot for the appointment.
+     * @return BOOKED if the appointment was moved, UNAVAILABLE if the provider
+     *         is taken at the new timeslot, or NOT_FOUND if the appointment is
+     *         not in the list.
+     */
+    @Override
+    public BookingResult reschedule(Appointment appointment, Timeslot timeslot) {
+        int position = positionOf(appointment);
+        if (position == NOT_FOUND) {
+            return BookingResult.NOT_FOUND;
+        }
+        if (isBooked(appointment.getProvider(), appointment.getDate(), timeslot)) {
+            return BookingResult.UNAVAILABLE;
+        }
+        Appointment moved = new Appointment(appointment.getDate(), timeslot, appointment.getPatient(),
+                appointment.getProvider());
+        unindex(bucketOf(position));
+        removeFromViews(appointment);
+        occupancy.release(appointment.getProvider(), appointment.getDate(), appointment.getTimeslot());
+        appointments[position] = moved;
+        place(position);
+        addToViews(moved);
+        occupancy.book(moved.getProvider(), moved.getDate(), timeslot);
+        publish(BookingEvent.Kind.RESCHEDULE, moved, appointment.getTimeslot());
+        return BookingResult.BOOKED;
+    }
+
+    /**
+     * Publishes every booking, cancellation and reschedule made through the
+     * list from now on to an event bus, as part of the change, so the events
+     * of the list are in the order of its changes. Appointments added, removed
+     * or loaded directly are not published.
+     * 
+     * @param events The bus to publish to, or null to stop publishing.
+     */
+    @Override
+    public void publishTo(EventBus events) {
+        this.events = events;
+    }
+
+    /**
+     * Publishes a change to the event bus, if the list has one. The change is
+     * offered, so the list never waits for a full ring in the middle of a
+     * change; a change the ring has no room for is counted as missed by the bus.
+     * 
+     * @param kind        The kind of change.
+     * @param appointment The appointment after the change.
+     * @param from        The timeslot before a reschedule, or null.
+     */
+    private void publish(BookingEvent.Kind kind, Appointment appointment, Timeslot from) {
+        if (events != null) {
+            events.offer(kind, appointment, from);
         }
     }
 
+    /**
+     * Finds the array position of this exact appointment object.
+     * 
+     * @param appointment The appointment to search for.
+     * @return The position of the appointment if found, -1 otherwise.
+     */
+    private int positionOf(Appointment appointment) {
+        int mask = index.length - 1;
+        for (int i = Probing.bucket(appointment.hashCode(), index.length); index[i] != 0; i = (i + 1) & mask) {
+            if (appointments[index[i] - 1] == appointment) {
+                return index[i] - 1;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Checks if a provider already has an appointment at the timeslot on the
+     * given date.
+     * 
+     * @param provider The provider to check.
+     * @param date     The date of the appointment.
+     * @param timeslot The timeslot of the appointment.
+     * @return true if the provider is not available, false otherwise.
+     */
+    public boolean isBooked(Provider provider, Date date, Timeslot timeslot) {
+        return occupancy.isBooked(provider, date, timeslot);
+    }
+
+    /**
+     * Gets the timeslots a provider has booked on a date as a bit mask.
+     * 
+     * @param provider The provider to check.
+     * @param date     The date to check.
+     * @return The bit mask of booked timeslots.
+     */
+    @Override
+    public int bookedSlots(Provider provider, Date date) {
+        return occupancy.slotsOf(provider, date);
+    }
+
     /**
      * Gets the number of appointments in the list.
      * 
      * @return The number of appointments in the list.
      */
+    @Override
     public int size() {
         return size;
     }
@@ -109,74 +502,177 @@ public class List {
         }
     }
 
+    /**
+     * Totals the charges of the appointments on the dates in a range, by
+     * provider. Chunks of the array are totaled in parallel.
+     * 
+     * @param first The first date of the range.
+     * @param last  The last date of the range, inclusive.
+     * @return The totals in cents, indexed by provider ordinal.
+     */
+    @Override
+    public long[] revenueByProvider(Date first, Date last) {
+        int firstDay = first.toEpochDay();
+        int lastDay = last.toEpochDay();
+        return Revenue.total(size, Revenue.CHUNK_SIZE,
+                (from, to, totals) -> Revenue.addTo(appointments, from, to, firstDay, lastDay, totals));
+    }
+
+    /**
+     * Adds the charges of the appointments on the days in a range to totals by
+     * provider, in the calling thread.
+     * 
+     * @param firstDay The epoch day the range starts on.
+     * @param lastDay  The epoch day the range ends on, inclusive.
+     * @param totals   The totals in cents to add to, indexed by provider ordinal.
+     */
+    void addRevenue(int firstDay, int lastDay, long[] totals) {
+        Revenue.addTo(appointments, 0, size, firstDay, lastDay, totals);
+    }
+
+    /**
+     * Gets the appointments that match a range query, walking only the range
+     * in the ordered view that fits the query.
+     * 
+     * @param query The dates and conditions of the appointments to get.
+     * @return The matching appointments in date/timeslot/provider order, read
+     *         from the list as they are iterated.
+     */
+    @Override
+    public Iterable<Appointment> range(RangeQuery query) {
+        return query.run(this);
+    }
+
+    /**
+     * Gets the appointments ordered by date and timeslot, then by provider name.
+     * 
+     * @return The appointments in date/timeslot/provider order.
+     */
+    @Override
+    public OrderedIndex byAppointment() {
+        return byAppointment;
+    }
+
+    /**
+     * Gets the appointments ordered by patient profile, then by date and
+     * timeslot.
+     * 
+     * @return The appointments in patient/date/timeslot order.
+     */
+    @Override
+    public OrderedIndex byPatient() {
+        return byPatient;
+    }
+
+    /**
+     * Gets the appointments ordered by provider county, then by date and
+     * timeslot.
+     * 
+     * @return The appointments in county/date/timeslot order.
+     */
+    @Override
+    public OrderedIndex byLocation() {
+        return byLocation;
+    }
+
     /**
      * Sorts appointments by patient profile, and then by date and timeslot.
      */
     public void sortByPatient() {
-        for (int i = 0; i < size - 1; i++) {
-            for (int j = 0; j < size - 1 - i; j++) {
-                if (appointments[j].getPatient().compareTo(appointments[j + 1].getPatient()) > 0) {
-                    swap(j, j + 1);
-                } else if (appointments[j].getPatient().compareTo(appointments[j + 1].getPatient()) == 0 &&
-                        appointments[j].getDate().compareTo(appointments[j + 1].getDate()) > 0) {
-                    swap(j, j + 1);
-                }
-            }
-        }
+        arrange(byPatient);
     }
 
     /**
      * Sorts appointments by date and timeslot, then by provider name.
      */
     public void sortByAppointment() {
-        for (int i = 0; i < size - 1; i++) {
-            for (int j = 0; j < size - 1 - i; j++) {
-                if (appointments[j].getDate().compareTo(appointments[j + 1].getDate()) > 0) {
-                    swap(j, j + 1);
-                } else if (appointments[j].getDate().compareTo(appointments[j + 1].getDate()) == 0 &&
-                        appointments[j].getTimeslot().compareTo(appointments[j + 1].getTimeslot()) > 0) {
-                    swap(j, j + 1);
-                }
-            }
-        }
+        arrange(byAppointment);
     }
 
     /**
      * Sorts appointments by provider location, then by date and timeslot.
      */
     public void sortByLocation() {
-        for (int i = 0; i < size - 1; i++) {
-            for (int j = 0; j < size - 1 - i; j++) {
-                if (appointments[j].getProvider().getLocation().getCounty()
-                        .compareTo(appointments[j + 1].getProvider().getLocation().getCounty()) > 0) {
-                    swap(j, j + 1);
-                }
-                // If counties are the same, compare by date
-                else if (appointments[j].getProvider().getLocation().getCounty()
-                        .compareTo(appointments[j + 1].getProvider().getLocation().getCounty()) == 0 &&
-                        appointments[j].getDate().compareTo(appointments[j + 1].getDate()) > 0) {
-                    swap(j, j + 1);
-                }
-                // If counties and dates are the same, compare by timeslot
-                else if (appointments[j].getProvider().getLocation().getCounty()
-                        .compareTo(appointments[j + 1].getProvider().getLocation().getCounty()) == 0 &&
-                        appointments[j].getDate().compareTo(appointments[j + 1].getDate()) == 0 &&
-                        appointments[j].getTimeslot().compareTo(appointments[j + 1].getTimeslot()) > 0) {
-                    swap(j, j + 1);
-                }
-            }
+        arrange(byLocation);
+    }
+
+    /**
+     * Copies the order of an ordered index into the array, so get() returns the
+     * appointments in that order.
+     * 
+     * @param view The ordered index to copy.
+     */
+    private void arrange(OrderedIndex view) {
+        int i = 0;
+        for (Appointment appointment : view) {
+            appointments[i++] = appointment;
         }
+        Arrays.fill(index, 0);
+        for (i = 0; i < size; i++) {
+            place(i);
+        }
+    }
+
+    /**
+     * Adds an appointment to the three ordered indexes.
+     * 
+     * @param appointment The appointment to add.
+     */
+    private void addToViews(Appointment appointment) {
+        byAppointment.add(appointment);
+        byPatient.add(appointment);
+        byLocation.add(appointment);
+    }
+
+    /**
+     * Removes an appointment from the three ordered indexes.
+     * 
+     * @param appointment The appointment to remove.
+     */
+    private void removeFromViews(Appointment appointment) {
+        byAppointment.remove(appointment);
+        byPatient.remove(appointment);
+        byLocation.remove(appointment);
+    }
+
+    /**
+     * Compares two appointments by date, then timeslot, then provider name.
+     * 
+     * @param a The first appointment.
+     * @param b The second appointment.
+     * @return A negative integer, zero, or a positive integer as a comes before,
+     *         with, or after b.
+     */
+    static int compareSlots(Appointment a, Appointment b) {
+        return Long.compare(a.key(), b.key());
+    }
+
+    /**
+     * Compares two appointments by patient profile, then by date, timeslot and
+     * provider.
+     * 
+     * @param a The first appointment.
+     * @param b The second appointment.
+     * @return A negative integer, zero, or a positive integer as a comes before,
+     *         with, or after b.
+     */
+    static int comparePatients(Appointment a, Appointment b) {
+        int patientComparison = a.getPatient().compareTo(b.getPatient());
+        return patientComparison != 0 ? patientComparison : compareSlots(a, b);
     }
 
     /**
-     * Swaps two appointments in the array.
+     * Compares two appointments by provider county, then by date, timeslot and
+     * provider.
      * 
-     * @param i The index of the first appointment.
-     * @param j The index of the second appointment.
+     * @param a The first appointment.
+     * @param b The second appointment.
+     * @return A negative integer, zero, or a positive integer as a comes before,
+     *         with, or after b.
      */
-    private void swap(int i, int j) {
-        Appointment temp = appointments[i];
-        appointments[i] = appointments[j];
-        appointments[j] = temp;
+    static int compareLocations(Appointment a, Appointment b) {
+        int countyComparison = a.getProvider().getLocation().getCounty()
+                .compareTo(b.getProvider().getLocation().getCounty());
+        return countyComparison != 0 ? countyComparison : compareSlots(a, b);
     }
 }
@@ -1,5 +1,7 @@
 package ruclinic;
 
+import java.util.Arrays;
+
 /**
  * Enum representing the location details for the clinic's providers.
  * 
@@ -16,6 +18,9 @@ public enum Location {
 
     private final String county;
     private final String zip;
+    private final String text; // the location as CITY, COUNTY ZIP
+    private static final String[] COUNTIES = Arrays.stream(values()).map(Location::getCounty).distinct().sorted()
+            .toArray(String[]::new); // distinct counties in alphabetical order
 
     /**
      * Constructor for the Location enum.
@@ -26,6 +31,7 @@ public enum Location {
     Location(String county, String zip) {
         this.county = county;
         this.zip = zip;
+        this.text = String.format("%s, %s %s", this.name(), county, zip); // Output: CITY, COUNTY ZIP
     }
 
     /**
@@ -46,6 +52,26 @@ public enum Location {
         return county;
     }
 
+    /**
+     * Gets the position of the location's county among all counties in
+     * alphabetical order, so counties can be compared and counted by number.
+     * 
+     * @return The rank of the county, from 0 to the number of counties - 1.
+     */
+    public int getCountyRank() {
+        return Arrays.binarySearch(COUNTIES, county);
+    }
+
+    /**
+     * Gets the distinct counties of all locations in alphabetical order, so
+     * the county of rank i is at index i.
+     * 
+     * @return A new array of the county names.
+     */
+    public static String[] getCounties() {
+        return COUNTIES.clone();
+    }
+
     /**
      * Gets the zip code of the location.
      * 
@@ -63,6 +89,6 @@ public enum Location {
      */
     @Override
     public String toString() {
-        return String.format("%s, %s %s", this.name(), county, zip); // Output: CITY, COUNTY ZIP
+        return text;
     }
 }
@@ -9,7 +9,10 @@ package ruclinic;
 public class MedicalRecord {
     private Patient[] patients;
     private int size; // number of patient objects in the array
+    private int[] index; // hash buckets holding array position + 1, 0 marks an empty bucket
+    private final DailyRevenue revenue; // charges of the visits added through the record, by day and provider
     private static final int INITIAL_CAPACITY = 4;
+    private static final int INITIAL_INDEX_CAPACITY = 16;
 
     /**
      * Constructor for MedicalRecord.
@@ -18,27 +21,60 @@ public class MedicalRecord {
     public MedicalRecord() {
         patients = new Patient[INITIAL_CAPACITY];
         size = 0;
+        index = new int[INITIAL_INDEX_CAPACITY];
+        revenue = new DailyRevenue();
     }
 
     /**
      * Adds a new patient to the medical record.
      * If the array capacity is exceeded, it automatically grows.
+     * A patient whose profile is already in the record is not added again.
      * 
      * @param patient The patient object to be added.
      */
     public void add(Patient patient) {
+        if (findPatient(patient.getProfile()) != null) {
+            return;
+        }
         if (size == patients.length) {
             grow();
         }
         patients[size++] = patient;
+        if (size * 2 > index.length) {
+            index = new int[index.length * 2];
+            for (int i = 0; i < size; i++) {
+                place(i);
+            }
+        } else {
+            place(size - 1);
+        }
+    }
+
+    /**
+     * Gets the one patient recorded for a person, adding a new patient if the
+     * person is not in the record yet. Every appointment of the person should
+     * share the profile of this patient.
+     * 
+     * @param fname The first name of the patient.
+     * @param lname The last name of the patient.
+     * @param dob   The date of birth of the patient.
+     * @return The patient in the record.
+     */
+    public Patient register(String fname, String lname, Date dob) {
+        Patient patient = findPatient(fname, lname, dob);
+        if (patient == null) {
+            patient = new Patient(new Profile(fname, lname, dob));
+            add(patient);
+        }
+        return patient;
     }
 
     /**
      * Helper method to increase the array capacity when needed.
-     * It grows the array by the value of INITIAL_CAPACITY.
+     * It doubles the array, so adding n patients copies O(n) references in total.
      */
     private void grow() {
-        Patient[] newPatients = new Patient[patients.length + INITIAL_CAPACITY];
+        Patient[] newPatients = new Patient[patients.length * 2];
         System.arraycopy(patients, 0, newPatients, 0, patients.length);
         patients = newPatients;
     }
@@ -61,6 +97,50 @@ public class MedicalRecord {
         return size;
     }
 
+    /**
+     * Adds an appointment that has taken place as a visit of its patient,
+     * adding the patient if the record does not have them yet.
+     * 
+     * @param appointment The appointment of the visit.
+     */
+    public void addVisit(Appointment appointment) {
+        Patient patient = findPatient(appointment.getPatient());
+        if (patient == null) {
+            patient = new Patient(appointment.getPatient());
+            add(patient);
+        }
+        addVisit(patient, appointment);
+    }
+
+    /**
+     * Adds an appointment that has taken place as a visit of a patient in the
+     * record, and adds its charge to the revenue of its day. A visit the
+     * patient already has is not added or charged again.
+     * 
+     * @param patient     The patient of the appointment, already in the record.
+     * @param appointment The appointment of the visit.
+     */
+    void addVisit(Patient patient, Appointment appointment) {
+        int visits = patient.getVisitCount();
+        patient.addVisit(new Visit(appointment));
+        if (patient.getVisitCount() > visits) {
+            revenue.add(appointment);
+        }
+    }
+
+    /**
+     * Adds the charges of the visits on the days in a range to totals by
+     * provider. The charges are kept by day as visits are added through the
+     * record, so this sums the days of the range without reading any visit.
+     * 
+     * @param first  The first date of the range.
+     * @param last   The last date of the range, inclusive.
+     * @param totals The totals in cents to add to, indexed by provider ordinal.
+     */
+    public void addRevenue(Date first, Date last, long[] totals) {
+        revenue.addTo(first.toEpochDay(), last.toEpochDay(), totals);
+    }
+
     /**
      * Finds a patient in the medical record by their profile.
      * 
@@ -68,11 +148,36 @@ public class MedicalRecord {
      * @return The Patient object if found, otherwise returns null.
      */
     public Patient findPatient(Profile profile) {
-        for (int i = 0; i < size; i++) {
-            if (patients[i].getProfile().equals(profile)) {
-                return patients[i];
+        return findPatient(profile.getFname(), profile.getLname(), profile.getDob());
+    }
+
+    /**
+     * Finds a patient in the medical record by name and date of birth, without
+     * building a profile to search with.
+     * 
+     * @param fname The first name of the patient.
+     * @param lname The last name of the patient.
+     * @param dob   The date of birth of the patient.
+     * @return The Patient object if found, otherwise returns null.
+     */
+    public Patient findPatient(String fname, String lname, Date dob) {
+        int mask = index.length - 1;
+        for (int i = Probing.bucket(Profile.hash(fname, lname, dob), index.length); index[i] != 0; i = (i + 1) & mask) {
+            Profile profile = patients[index[i] - 1].getProfile();
+            if (profile.getFname().equals(fname) && profile.getLname().equals(lname)
+                    && profile.getDob().equals(dob)) {
+                return patients[index[i] - 1];
             }
         }
         return null; // Return null if the patient is not found
     }
+
+    /**
+     * Stores an array position in the first free bucket of its probe sequence.
+     * 
+     * @param position The position of a patient in the array.
+     */
+    private void place(int position) {
+        Probing.place(index, position, patients[position].getProfile().hashCode());
+    }
 }
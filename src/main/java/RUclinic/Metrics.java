@@ -0,0 +1,79 @@
+package ruclinic;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The Metrics class holds the statistics of every scheduler command: a latency
+ * histogram and outcome counts for each command, plus one entry for lines that
+ * are not a command. One Metrics object can be shared by every scheduler of a
+ * process, and its statistics can be published as JMX MBeans.
+ *
+ * @author Paldeep Sekhon
+ * @author Aditya Ponni
+ */
+public class Metrics {
+    static final String OTHER = "OTHER"; // the entry of lines that are not a command
+    private static final String DOMAIN = "ruclinic";
+
+    private final CommandStats[] stats; // one entry per command, in the order given, then OTHER
+
+    /**
+     * Constructs empty statistics for a set of commands.
+     *
+     * @param commands The names of the commands.
+     */
+    public Metrics(String... commands) {
+        stats = new CommandStats[commands.length + 1];
+        for (int i = 0; i < commands.length; i++) {
+            stats[i] = new CommandStats(commands[i]);
+        }
+        stats[commands.length] = new CommandStats(OTHER);
+    }
+
+    /**
+     * Gets the statistics of a command.
+     *
+     * @param command The name of the command, or OTHER.
+     * @return The statistics of the command.
+     * @throws IllegalArgumentException if the command has no statistics.
+     */
+    public CommandStats stats(String command) {
+        for (CommandStats entry : stats) {
+            if (entry.getCommand().equals(command)) {
+                return entry;
+            }
+        }
+        throw new IllegalArgumentException("No statistics for command " + command);
+    }
+
+    /**
+     * Gets the statistics of every command.
+     *
+     * @return The statistics in the order the commands were given, then OTHER.
+     */
+    public CommandStats[] getStats() {
+        return stats.clone();
+    }
+
+    /**
+     * Publishes the statistics of every command in the platform MBean server,
+     * as ruclinic:type=CommandStats,name=COMMAND. An MBean left by an earlier
+     * Metrics object with the same name is replaced.
+     *
+     * @throws JMException if an MBean cannot be registered.
+     */
+    public void register() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (CommandStats entry : stats) {
+            ObjectName name = new ObjectName(DOMAIN + ":type=CommandStats,name=" + entry.getCommand());
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(entry, name);
+        }
+    }
+}
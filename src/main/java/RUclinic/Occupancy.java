@@ -0,0 +1,190 @@
+package ruclinic;
+
+/**
+ * The Occupancy class indexes the time slots each provider has booked on each
+ * day, so a booking conflict is a single bit test instead of a scan of the
+ * appointment list. Every provider/day pair owns one bit per Timeslot.
+ *
+ * @author Paldeep Sekhon
+ * @author Aditya Ponni
+ */
+public class Occupancy {
+    private long[] keys; // provider/day keys, 0 marks an empty bucket
+    private byte[] slots; // booked timeslot bits for the key in the same bucket
+    private int size; // number of provider/day pairs in the table
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Constructs an empty occupancy index.
+     */
+    public Occupancy() {
+        keys = new long[INITIAL_CAPACITY];
+        slots = new byte[INITIAL_CAPACITY];
+        size = 0;
+    }
+
+    /**
+     * Checks if the provider already has an appointment at the timeslot on the
+     * given date.
+     *
+     * @param provider The provider to check.
+     * @param date     The date of the appointment.
+     * @param timeslot The timeslot of the appointment.
+     * @return true if the slot is taken, false otherwise.
+     */
+    public boolean isBooked(Provider provider, Date date, Timeslot timeslot) {
+        return (slotsOf(provider, date) & bit(timeslot)) != 0;
+    }
+
+    /**
+     * Gets the booked timeslots of a provider on a date as a bit mask, with bit i
+     * set when the timeslot with ordinal i is taken.
+     *
+     * @param provider The provider to check.
+     * @param date     The date to check.
+     * @return The bit mask of booked timeslots.
+     */
+    public int slotsOf(Provider provider, Date date) {
+        int bucket = find(key(provider, date));
+        return bucket < 0 ? 0 : slots[bucket];
+    }
+
+    /**
+     * Marks the timeslot as taken for the provider on the given date.
+     *
+     * @param provider The provider of the appointment.
+     * @param date     The date of the appointment.
+     * @param timeslot The timeslot of the appointment.
+     */
+    public void book(Provider provider, Date date, Timeslot timeslot) {
+        long key = key(provider, date);
+        int bucket = find(key);
+        if (bucket < 0) {
+            if ((size + 1) * 4 > keys.length * 3) {
+                grow();
+            }
+            bucket = insert(key);
+        }
+        slots[bucket] |= bit(timeslot);
+    }
+
+    /**
+     * Marks the timeslot as free for the provider on the given date. A
+     * provider/day pair with no booked timeslot left is removed, so the table
+     * only holds the days that have appointments.
+     *
+     * @param provider The provider of the appointment.
+     * @param date     The date of the appointment.
+     * @param timeslot The timeslot of the appointment.
+     */
+    public void release(Provider provider, Date date, Timeslot timeslot) {
+        int bucket = find(key(provider, date));
+        if (bucket >= 0) {
+            slots[bucket] &= ~bit(timeslot);
+            if (slots[bucket] == 0) {
+                remove(bucket);
+            }
+        }
+    }
+
+    /**
+     * Builds the table key for a provider and a valid date. The key is never 0.
+     *
+     * @param provider The provider.
+     * @param date     The date.
+     * @return The key of the provider/day pair.
+     */
+    private static long key(Provider provider, Date date) {
+        return ((long) date.toEpochDay() << 4 | provider.ordinal()) + 1;
+    }
+
+    /**
+     * Gets the bit of a timeslot in a slot mask.
+     *
+     * @param timeslot The timeslot.
+     * @return The bit mask with only the timeslot's bit set.
+     */
+    private static int bit(Timeslot timeslot) {
+        return 1 << timeslot.ordinal();
+    }
+
+    /**
+     * Gets the home bucket of a key.
+     *
+     * @param key The key to hash.
+     * @return The first bucket to probe.
+     */
+    private int home(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 33) & (keys.length - 1);
+    }
+
+    /**
+     * Finds the bucket holding a key using linear probing.
+     *
+     * @param key The key to search for.
+     * @return The bucket of the key if found, -1 otherwise.
+     */
+    private int find(long key) {
+        int mask = keys.length - 1;
+        for (int i = home(key); keys[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Places a key that is not in the table into the first free bucket.
+     *
+     * @param key The key to insert.
+     * @return The bucket the key was placed in.
+     */
+    private int insert(long key) {
+        int mask = keys.length - 1;
+        int i = home(key);
+        while (keys[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        size++;
+        return i;
+    }
+
+    /**
+     * Empties a bucket and shifts later keys of the same probe run back into
+     * it, so every key stays reachable from its home bucket without tombstones.
+     *
+     * @param hole The bucket to empty.
+     */
+    private void remove(int hole) {
+        int mask = keys.length - 1;
+        for (int i = (hole + 1) & mask; keys[i] != 0; i = (i + 1) & mask) {
+            int home = home(keys[i]);
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                keys[hole] = keys[i];
+                slots[hole] = slots[i];
+                hole = i;
+            }
+        }
+        keys[hole] = 0;
+        slots[hole] = 0;
+        size--;
+    }
+
+    /**
+     * Doubles the table capacity and rehashes every provider/day pair.
+     */
+    private void grow() {
+        long[] oldKeys = keys;
+        byte[] oldSlots = slots;
+        keys = new long[oldKeys.length * 2];
+        slots = new byte[oldKeys.length * 2];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                slots[insert(oldKeys[i])] = oldSlots[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package ruclinic;
+
+/**
+ * The Opening class is a timeslot of a provider on a date that nobody has
+ * booked, as found by a search for the next available timeslots.
+ *
+ * @author Paldeep Sekhon
+ * @author Aditya Ponni
+ */
+public class Opening {
+    private final Date date;
+    private final Timeslot timeslot;
+    private final Provider provider;
+
+    /**
+     * Constructs an opening.
+     *
+     * @param date     The date of the opening.
+     * @param timeslot The timeslot of the opening.
+     * @param provider The provider who is free.
+     */
+    public Opening(Date date, Timeslot timeslot, Provider provider) {
+        this.date = date;
+        this.timeslot = timeslot;
+        this.provider = provider;
+    }
+
+    /**
+     * Gets the date of the opening.
+     *
+     * @return The date.
+     */
+    public Date getDate() {
+        return date;
+    }
+
+    /**
+     * Gets the timeslot of the opening.
+     *
+     * @return The timeslot.
+     */
+    public Timeslot getTimeslot() {
+        return timeslot;
+    }
+
+    /**
+     * Gets the provider who is free.
+     *
+     * @return The provider.
+     */
+    public Provider getProvider() {
+        return provider;
+    }
+
+    /**
+     * Returns a string representation of the opening, like an appointment row
+     * without a patient.
+     *
+     * @return A string in the format "DATE TIMESLOT [PROVIDER, CITY, COUNTY ZIP, SPECIALTY]".
+     */
+    @Override
+    public String toString() {
+        return date + " " + timeslot + " " + provider.getLabel();
+    }
+}
@@ -0,0 +1,253 @@
+package ruclinic;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * The OrderedIndex class keeps appointments sorted by a fixed ordering as they
+ * are added and removed, so they can be listed in order without sorting.
+ * It is a skip list: adding and removing take O(log n) expected time, and a
+ * walk over all appointments takes O(n).
+ * The ordering must tell apart any two appointments held at the same time.
+ *
+ * @author Paldeep Sekhon
+ * @author Aditya Ponni
+ */
+public class OrderedIndex implements Iterable<Appointment> {
+    private static final int MAX_LEVEL = 32;
+    private final Comparator<Appointment> order;
+    private final Node head; // sentinel node in front of the first appointment
+    private final Node[] update; // scratch array of the last node before the target on each level
+    private int level; // number of levels in use
+    private int size; // number of appointments in the index
+    private int seed; // state of the random level generator
+
+    /**
+     * A skip list node holding one appointment and its forward links.
+     */
+    private static class Node {
+        private final Appointment appointment;
+        private final Node[] next;
+
+        /**
+         * Constructs a node with the given number of levels.
+         *
+         * @param appointment The appointment held by the node.
+         * @param levels      The number of forward links.
+         */
+        Node(Appointment appointment, int levels) {
+            this.appointment = appointment;
+            this.next = new Node[levels];
+        }
+    }
+
+    /**
+     * Constructs an empty index that keeps appointments in the given order.
+     *
+     * @param order The ordering of the appointments.
+     */
+    public OrderedIndex(Comparator<Appointment> order) {
+        this.order = order;
+        this.head = new Node(null, MAX_LEVEL);
+        this.update = new Node[MAX_LEVEL];
+        this.level = 1;
+        this.size = 0;
+        this.seed = 0x2545F491;
+    }
+
+    /**
+     * Adds an appointment at its place in the ordering.
+     *
+     * @param appointment The appointment to add.
+     */
+    public void add(Appointment appointment) {
+        descend(appointment);
+        int levels = randomLevel();
+        if (levels > level) {
+            for (int i = level; i < levels; i++) {
+                update[i] = head;
+            }
+            level = levels;
+        }
+        Node node = new Node(appointment, levels);
+        for (int i = 0; i < levels; i++) {
+            node.next[i] = update[i].next[i];
+            update[i].next[i] = node;
+        }
+        size++;
+    }
+
+    /**
+     * Fills an empty index with appointments that are already in order, linking
+     * each one after the last in O(1).
+     *
+     * @param appointments The appointments in the index's order.
+     * @param count        The number of appointments to add from the array.
+     * @throws IllegalStateException if the index is not empty.
+     */
+    public void addAll(Appointment[] appointments, int count) {
+        if (size != 0) {
+            throw new IllegalStateException("Index is not empty.");
+        }
+        Node[] last = update;
+        for (int i = 0; i < MAX_LEVEL; i++) {
+            last[i] = head;
+        }
+        for (int n = 0; n < count; n++) {
+            int levels = randomLevel();
+            level = Math.max(level, levels);
+            Node node = new Node(appointments[n], levels);
+            for (int i = 0; i < levels; i++) {
+                last[i].next[i] = node;
+                last[i] = node;
+            }
+        }
+        size = count;
+    }
+
+    /**
+     * Removes an appointment from the index. The appointment must still have
+     * the fields it had when it was added.
+     *
+     * @param appointment The appointment to remove.
+     * @return true if the appointment was removed, false if it was not found.
+     */
+    public boolean remove(Appointment appointment) {
+        descend(appointment);
+        Node node = update[0].next[0];
+        if (node == null || order.compare(node.appointment, appointment) != 0) {
+            return false;
+        }
+        for (int i = 0; i < node.next.length; i++) {
+            update[i].next[i] = node.next[i];
+        }
+        while (level > 1 && head.next[level - 1] == null) {
+            level--;
+        }
+        size--;
+        return true;
+    }
+
+    /**
+     * Gets the number of appointments in the index.
+     *
+     * @return The number of appointments in the index.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns an iterator over the appointments in order.
+     *
+     * @return An iterator from the first to the last appointment.
+     */
+    @Override
+    public Iterator<Appointment> iterator() {
+        return new Iterator<Appointment>() {
+            private Node current = head.next[0];
+
+            @Override
+            public boolean hasNext() {
+                return current != null;
+            }
+
+            @Override
+            public Appointment next() {
+                if (current == null) {
+                    throw new NoSuchElementException();
+                }
+                Appointment appointment = current.appointment;
+                current = current.next[0];
+                return appointment;
+            }
+        };
+    }
+
+    /**
+     * Gets the appointments in a range of the ordering that pass a filter. The
+     * start of the range is found by descending the levels, so a query costs
+     * O(log n) plus the appointments walked in the range. The appointments are
+     * read as the walk goes, so the index must not change during the walk.
+     *
+     * @param position Where an appointment lies against the range: negative
+     *                 before it, 0 in it, positive after it. It must not
+     *                 decrease along the ordering.
+     * @param filter   The condition an appointment in the range must meet to be
+     *                 returned.
+     * @return The matching appointments in the range, in order.
+     */
+    public Iterable<Appointment> range(ToIntFunction<Appointment> position, Predicate<Appointment> filter) {
+        Node node = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (node.next[i] != null && position.applyAsInt(node.next[i].appointment) < 0) {
+                node = node.next[i];
+            }
+        }
+        Node first = node.next[0];
+        return () -> new Iterator<Appointment>() {
+            private Node current = skip(first);
+
+            @Override
+            public boolean hasNext() {
+                return current != null;
+            }
+
+            @Override
+            public Appointment next() {
+                if (current == null) {
+                    throw new NoSuchElementException();
+                }
+                Appointment appointment = current.appointment;
+                current = skip(current.next[0]);
+                return appointment;
+            }
+
+            /**
+             * Finds the first node from a node on that is in the range and
+             * passes the filter.
+             *
+             * @param node The node to start at.
+             * @return The node, or null if the range has no more matches.
+             */
+            private Node skip(Node node) {
+                while (node != null && position.applyAsInt(node.appointment) == 0 && !filter.test(node.appointment)) {
+                    node = node.next[0];
+                }
+                return node == null || position.applyAsInt(node.appointment) != 0 ? null : node;
+            }
+        };
+    }
+
+    /**
+     * Fills the update array with the last node before the appointment on each
+     * level.
+     *
+     * @param appointment The appointment to search for.
+     */
+    private void descend(Appointment appointment) {
+        Node node = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (node.next[i] != null && order.compare(node.next[i].appointment, appointment) < 0) {
+                node = node.next[i];
+            }
+            update[i] = node;
+        }
+    }
+
+    /**
+     * Picks the number of levels for a new node, each extra level with
+     * probability 1/2.
+     *
+     * @return A level count between 1 and MAX_LEVEL.
+     */
+    private int randomLevel() {
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        return Math.min(Integer.numberOfTrailingZeros(seed) + 1, MAX_LEVEL);
+    }
+}
@@ -0,0 +1,27 @@
+package ruclinic;
+
+/**
+ * Enum representing how a scheduler command ended: OK, or the reason it was
+ * rejected. Each outcome is counted per command.
+ * 
+ * @author Paldeep Sekhon
+ * @author Aditya Ponni
+ */
+public enum Outcome {
+    OK,
+    INVALID_COMMAND,
+    INVALID_DATE,
+    PAST_DATE,
+    WEEKEND,
+    HOLIDAY,
+    BEYOND_HORIZON,
+    INVALID_DOB,
+    FUTURE_DOB,
+    UNKNOWN_PROVIDER,
+    UNKNOWN_NAME,
+    INVALID_TIMESLOT,
+    DUPLICATE,
+    UNAVAILABLE,
+    NOT_FOUND,
+    IO_ERROR
+}
@@ -0,0 +1,597 @@
+package ruclinic;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * The PackedList class is an appointment list that stores each appointment as
+ * a few primitive fields in parallel arrays instead of as objects: the epoch
+ * day, the timeslot and provider ordinals, and a patient number. Each patient
+ * profile is stored once and shared by all of the patient's appointments.
+ * Appointment objects are only created when an appointment is read, so a large
+ * book takes a small fraction of the heap a List of Appointment objects does.
+ * It keeps no ordered views, so the orders and ranges of the book are sorted
+ * from the arrays each time they are read.
+ *
+ * @author Paldeep Sekhon
+ * @author Aditya Ponni
+ */
+public class PackedList implements AppointmentBook {
+    private int[] days; // epoch day of each appointment
+    private byte[] slots; // timeslot ordinal of each appointment
+    private byte[] providers; // provider ordinal of each appointment
+    private int[] patients; // patient number of each appointment
+    private int size; // number of appointments in the arrays
+    private int[] index; // hash buckets holding array position + 1, 0 marks an empty bucket
+    private Occupancy occupancy; // booked timeslots per provider and day
+
+    private Profile[] profiles; // patient profiles by patient number
+    private int profileCount; // number of patient profiles
+    private int[] profileIndex; // hash buckets holding patient number + 1, 0 marks an empty bucket
+    private EventBus events; // where changes are published, or null
+
+    private static final Timeslot[] TIMESLOTS = Timeslot.values(); // by ordinal, read without cloning values()
+    private static final Provider[] PROVIDERS = Provider.values(); // by ordinal
+    private static final int NOT_FOUND = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Constructs an empty packed list of appointments.
+     */
+    public PackedList() {
+        days = new int[INITIAL_CAPACITY];
+        slots = new byte[INITIAL_CAPACITY];
+        providers = new byte[INITIAL_CAPACITY];
+        patients = new int[INITIAL_CAPACITY];
+        size = 0;
+        index = new int[INITIAL_CAPACITY * 2];
+        occupancy = new Occupancy();
+        profiles = new Profile[INITIAL_CAPACITY];
+        profileCount = 0;
+        profileIndex = new int[INITIAL_CAPACITY * 2];
+    }
+
+    /**
+     * Checks if the list contains a specific appointment.
+     *
+     * @param appointment The appointment to check for.
+     * @return true if the list contains the appointment, false otherwise.
+     */
+    public boolean contains(Appointment appointment) {
+        return find(appointment) != NOT_FOUND;
+    }
+
+    /**
+     * Adds a new appointment to the list. Only the appointment's fields are
+     * kept, not the appointment object itself.
+     *
+     * @param appointment The appointment to add to the list.
+     */
+    public void add(Appointment appointment) {
+        if (size == days.length) {
+            grow();
+        }
+        days[size] = appointment.getDate().toEpochDay();
+        slots[size] = (byte) appointment.getTimeslot().ordinal();
+        providers[size] = (byte) appointment.getProvider().ordinal();
+        patients[size] = patientNumber(appointment.getPatient());
+        size++;
+        if (size * 2 > index.length) {
+            rehash(index.length * 2);
+        } else {
+            place(size - 1);
+        }
+        occupancy.book(appointment.getProvider(), appointment.getDate(), appointment.getTimeslot());
+    }
+
+    /**
+     * Removes an appointment from the list. The last appointment in the arrays
+     * is moved into the gap.
+     *
+     * @param appointment The appointment to remove from the list.
+     */
+    public void remove(Appointment appointment) {
+        int position = find(appointment);
+        if (position == NOT_FOUND) {
+            return;
+        }
+        unindex(bucketOf(position));
+        int last = size - 1;
+        if (position != last) {
+            index[bucketOf(last)] = position + 1;
+            days[position] = days[last];
+            slots[position] = slots[last];
+            providers[position] = providers[last];
+            patients[position] = patients[last];
+        }
+        size--;
+        occupancy.release(appointment.getProvider(), appointment.getDate(), appointment.getTimeslot());
+    }
+
+    /**
+     * Books an appointment if the patient does not already have it and the
+     * provider is free at its timeslot.
+     *
+     * @param appointment The appointment to book.
+     * @return BOOKED if the appointment was added, DUPLICATE if the list already
+     *         has it, or UNAVAILABLE if the provider is taken at the timeslot.
+     */
+    @Override
+    public BookingResult book(Appointment appointment) {
+        if (contains(appointment)) {
+            return BookingResult.DUPLICATE;
+        }
+        if (isBooked(appointment.getProvider(), appointment.getDate(), appointment.getTimeslot())) {
+            return BookingResult.UNAVAILABLE;
+        }
+        add(appointment);
+        publish(BookingEvent.Kind.BOOK, appointment, null);
+        return BookingResult.BOOKED;
+    }
+
+    /**
+     * Books a batch of appointments one at a time, in batch order.
+     *
+     * @param batch The appointments to book.
+     * @return The result of each appointment, at the same position as in the
+     *         batch.
+     */
+    @Override
+    public BookingResult[] bookAll(Appointment[] batch) {
+        BookingResult[] results = new BookingResult[batch.length];
+        for (int i = 0; i < batch.length; i++) {
+            results[i] = book(batch[i]);
+        }
+        return results;
+    }
+
+    /**
+     * Cancels the appointment a patient has at a timeslot on the given date.
+     *
+     * @param date     The date of the appointment.
+     * @param timeslot The timeslot of the appointment.
+     * @param patient  The profile of the patient.
+     * @return The canceled appointment, or null if there was none.
+     */
+    @Override
+    public Appointment cancel(Date date, Timeslot timeslot, Profile patient) {
+        Appointment appointment = find(date, timeslot, patient);
+        if (appointment != null) {
+            remove(appointment);
+            publish(BookingEvent.Kind.CANCEL, appointment, null);
+        }
+        return appointment;
+    }
+
+    /**
+     * Cancels every appointment that matches a range query.
+     *
+     * @param query The dates and conditions of the appointments to cancel.
+     * @return The canceled appointments in date/timeslot/provider order.
+     */
+    @Override
+    public Appointment[] cancelAll(RangeQuery query) {
+        Appointment[] canceled = matching(query);
+        for (Appointment appointment : canceled) {
+            remove(appointment);
+            publish(BookingEvent.Kind.CANCEL, appointment, null);
+        }
+        return canceled;
+    }
+
+    /**
+     * Removes every appointment dated before a day. Nothing is published.
+     *
+     * @param day The first day to keep.
+     * @return The removed appointments in date/timeslot/provider order.
+     */
+    @Override
+    public Appointment[] retire(Date day) {
+        Appointment[] retired = matching(RangeQuery.before(day));
+        for (Appointment appointment : retired) {
+            remove(appointment);
+        }
+        return retired;
+    }
+
+    /**
+     * Moves an appointment in the list to a new timeslot on the same date if
+     * its provider is free then. The given appointment object is not changed.
+     *
+     * @param appointment The appointment to reschedule.
+     * @param timeslot    The new timeslot for the appointment.
+     * @return BOOKED if the appointment was moved, UNAVAILABLE if the provider
+     *         is taken at the new timeslot, or NOT_FOUND if the appointment is
+     *         not in the list.
+     */
+    @Override
+    public BookingResult reschedule(Appointment appointment, Timeslot timeslot) {
+        int position = find(appointment);
+        if (position == NOT_FOUND) {
+            return BookingResult.NOT_FOUND;
+        }
+        if (isBooked(appointment.getProvider(), appointment.getDate(), timeslot)) {
+            return BookingResult.UNAVAILABLE;
+        }
+        unindex(bucketOf(position));
+        occupancy.release(appointment.getProvider(), appointment.getDate(), appointment.getTimeslot());
+        slots[position] = (byte) timeslot.ordinal();
+        place(position);
+        occupancy.book(appointment.getProvider(), appointment.getDate(), timeslot);
+        if (events != null) {
+            publish(BookingEvent.Kind.RESCHEDULE, get(position), appointment.getTimeslot());
+        }
+        return BookingResult.BOOKED;
+    }
+
+    /**
+     * Publishes every booking, cancellation and reschedule made through the
+     * list from now on to an event bus, as part of the change. Appointments
+     * added or removed directly are not published.
+     *
+     * @param events The bus to publish to, or null to stop publishing.
+     */
+    @Override
+    public void publishTo(EventBus events) {
+        this.events = events;
+    }
+
+    /**
+     * Finds the appointment a patient has at a timeslot on the given date,
+     * regardless of the provider.
+     *
+     * @param date     The date of the appointment.
+     * @param timeslot The timeslot of the appointment.
+     * @param patient  The profile of the patient.
+     * @return A new appointment object for the appointment if found, or null if
+     *         not found.
+     */
+    @Override
+    public Appointment find(Date date, Timeslot timeslot, Profile patient) {
+        int patientNumber = findPatient(patient);
+        if (patientNumber == NOT_FOUND) {
+            return null;
+        }
+        int day = date.toEpochDay();
+        int mask = index.length - 1;
+        for (int i = Probing.bucket(hash(day, timeslot.ordinal(), patientNumber), index.length); index[i] != 0; i = (i + 1) & mask) {
+            int position = index[i] - 1;
+            if (days[position] == day && slots[position] == timeslot.ordinal()
+                    && patients[position] == patientNumber) {
+                return get(position);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks if a provider already has an appointment at the timeslot on the
+     * given date.
+     *
+     * @param provider The provider to check.
+     * @param date     The date of the appointment.
+     * @param timeslot The timeslot of the appointment.
+     * @return true if the provider is not available, false otherwise.
+     */
+    public boolean isBooked(Provider provider, Date date, Timeslot timeslot) {
+        return occupancy.isBooked(provider, date, timeslot);
+    }
+
+    /**
+     * Gets the timeslots a provider has booked on a date as a bit mask, with bit
+     * i set when the timeslot with ordinal i is taken.
+     *
+     * @param provider The provider to check.
+     * @param date     The date to check.
+     * @return The bit mask of booked timeslots.
+     */
+    @Override
+    public int bookedSlots(Provider provider, Date date) {
+        return occupancy.slotsOf(provider, date);
+    }
+
+    /**
+     * Gets the number of appointments in the list.
+     *
+     * @return The number of appointments in the list.
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Totals the charges of the appointments on the dates in a range, by
+     * provider, reading only the packed fields. Chunks of the arrays are totaled
+     * in parallel.
+     *
+     * @param first The first date of the range.
+     * @param last  The last date of the range, inclusive.
+     * @return The totals in cents, indexed by provider ordinal.
+     */
+    @Override
+    public long[] revenueByProvider(Date first, Date last) {
+        int firstDay = first.toEpochDay();
+        int lastDay = last.toEpochDay();
+        return Revenue.total(size, Revenue.CHUNK_SIZE, (from, to, totals) -> {
+            for (int i = from; i < to; i++) {
+                if (days[i] >= firstDay && days[i] <= lastDay) {
+                    totals[providers[i]] += Revenue.cents(providers[i]);
+                }
+            }
+        });
+    }
+
+    /**
+     * Gets the appointments that match a range query.
+     *
+     * @param query The dates and conditions of the appointments to get.
+     * @return The matching appointments in date/timeslot/provider order.
+     */
+    @Override
+    public Iterable<Appointment> range(RangeQuery query) {
+        return Arrays.asList(matching(query));
+    }
+
+    /**
+     * Gets the appointments ordered by date and timeslot, then by provider name.
+     *
+     * @return The appointments in date/timeslot/provider order.
+     */
+    @Override
+    public Iterable<Appointment> byAppointment() {
+        return sorted(List::compareSlots);
+    }
+
+    /**
+     * Gets the appointments ordered by patient profile, then by date and
+     * timeslot.
+     *
+     * @return The appointments in patient/date/timeslot order.
+     */
+    @Override
+    public Iterable<Appointment> byPatient() {
+        return sorted(List::comparePatients);
+    }
+
+    /**
+     * Gets the appointments ordered by provider county, then by date and
+     * timeslot.
+     *
+     * @return The appointments in county/date/timeslot order.
+     */
+    @Override
+    public Iterable<Appointment> byLocation() {
+        return sorted(List::compareLocations);
+    }
+
+    /**
+     * Builds an appointment object for the appointment at a given index. Each
+     * call returns a new object sharing the stored patient profile.
+     *
+     * @param index The index of the appointment to retrieve.
+     * @return A new appointment object for the appointment at the index.
+     * @throws IndexOutOfBoundsException if the index is out of range.
+     */
+    public Appointment get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index out of bounds.");
+        }
+        return new Appointment(Date.ofEpochDay(days[index]), TIMESLOTS[slots[index]], profiles[patients[index]],
+                PROVIDERS[providers[index]]);
+    }
+
+    /**
+     * Publishes a change to the event bus, if the list has one. The change is
+     * offered, so the list never waits for a full ring in the middle of a
+     * change; a change the ring has no room for is counted as missed by the bus.
+     *
+     * @param kind        The kind of change.
+     * @param appointment The appointment after the change.
+     * @param from        The timeslot before a reschedule, or null.
+     */
+    private void publish(BookingEvent.Kind kind, Appointment appointment, Timeslot from) {
+        if (events != null) {
+            events.offer(kind, appointment, from);
+        }
+    }
+
+    /**
+     * Builds every appointment in the list and sorts them.
+     *
+     * @param order The order of the appointments.
+     * @return The appointments in order.
+     */
+    private Iterable<Appointment> sorted(Comparator<Appointment> order) {
+        Appointment[] all = new Appointment[size];
+        for (int i = 0; i < size; i++) {
+            all[i] = get(i);
+        }
+        Arrays.sort(all, order);
+        return Arrays.asList(all);
+    }
+
+    /**
+     * Builds the appointments that match a range query, scanning the arrays.
+     *
+     * @param query The dates and conditions of the appointments.
+     * @return The matching appointments in date/timeslot/provider order.
+     */
+    private Appointment[] matching(RangeQuery query) {
+        Appointment[] matches = new Appointment[4];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            Appointment appointment = get(i);
+            if (query.matches(appointment)) {
+                if (count == matches.length) {
+                    matches = Arrays.copyOf(matches, count * 2);
+                }
+                matches[count++] = appointment;
+            }
+        }
+        matches = Arrays.copyOf(matches, count);
+        Arrays.sort(matches, List::compareSlots);
+        return matches;
+    }
+
+    /**
+     * Finds the array position of an appointment with the same fields.
+     *
+     * @param appointment The appointment to search for.
+     * @return The position of the appointment if found, -1 otherwise.
+     */
+    private int find(Appointment appointment) {
+        int patientNumber = findPatient(appointment.getPatient());
+        if (patientNumber == NOT_FOUND) {
+            return NOT_FOUND;
+        }
+        int day = appointment.getDate().toEpochDay();
+        int slot = appointment.getTimeslot().ordinal();
+        int provider = appointment.getProvider().ordinal();
+        int mask = index.length - 1;
+        for (int i = Probing.bucket(hash(day, slot, patientNumber), index.length); index[i] != 0; i = (i + 1) & mask) {
+            int position = index[i] - 1;
+            if (days[position] == day && slots[position] == slot && providers[position] == provider
+                    && patients[position] == patientNumber) {
+                return position;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Computes the hash code of an appointment from its packed fields. The
+     * provider is left out so an appointment can be looked up by patient and
+     * time alone.
+     *
+     * @param day           The epoch day of the appointment.
+     * @param slot          The timeslot ordinal of the appointment.
+     * @param patientNumber The patient number of the appointment.
+     * @return The hash code.
+     */
+    private static int hash(int day, int slot, int patientNumber) {
+        return (day * 31 + slot) * 31 + patientNumber;
+    }
+
+    /**
+     * Gets the hash code of the appointment at an array position.
+     *
+     * @param position The position of an appointment in the arrays.
+     * @return The hash code of the appointment.
+     */
+    private int hashAt(int position) {
+        return hash(days[position], slots[position], patients[position]);
+    }
+
+    /**
+     * Finds the bucket of the index that refers to an array position.
+     *
+     * @param position The position of an appointment in the arrays.
+     * @return The bucket holding the position.
+     */
+    private int bucketOf(int position) {
+        return Probing.bucketOf(index, position, hashAt(position));
+    }
+
+    /**
+     * Stores an array position in the first free bucket of its probe sequence.
+     *
+     * @param position The position of an appointment in the arrays.
+     */
+    private void place(int position) {
+        Probing.place(index, position, hashAt(position));
+    }
+
+    /**
+     * Empties a bucket of the index, shifting later entries of the same probe
+     * run back so lookups never stop early.
+     *
+     * @param hole The bucket to empty.
+     */
+    private void unindex(int hole) {
+        Probing.unindex(index, hole, this::hashAt);
+    }
+
+    /**
+     * Rebuilds the appointment index with a new number of buckets.
+     *
+     * @param capacity The new number of buckets, a power of two.
+     */
+    private void rehash(int capacity) {
+        index = new int[capacity];
+        for (int i = 0; i < size; i++) {
+            place(i);
+        }
+    }
+
+    /**
+     * Doubles the capacity of the appointment arrays.
+     */
+    private void grow() {
+        int capacity = days.length * 2;
+        int[] newDays = new int[capacity];
+        byte[] newSlots = new byte[capacity];
+        byte[] newProviders = new byte[capacity];
+        int[] newPatients = new int[capacity];
+        System.arraycopy(days, 0, newDays, 0, size);
+        System.arraycopy(slots, 0, newSlots, 0, size);
+        System.arraycopy(providers, 0, newProviders, 0, size);
+        System.arraycopy(patients, 0, newPatients, 0, size);
+        days = newDays;
+        slots = newSlots;
+        providers = newProviders;
+        patients = newPatients;
+    }
+
+    /**
+     * Finds the number of a patient profile that is already stored.
+     *
+     * @param profile The profile to search for.
+     * @return The patient number if found, -1 otherwise.
+     */
+    private int findPatient(Profile profile) {
+        int mask = profileIndex.length - 1;
+        for (int i = Probing.bucket(profile.hashCode(), profileIndex.length); profileIndex[i] != 0; i = (i + 1) & mask) {
+            if (profiles[profileIndex[i] - 1].equals(profile)) {
+                return profileIndex[i] - 1;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Gets the number of a patient profile, storing the profile if it is new.
+     *
+     * @param profile The profile of the patient.
+     * @return The patient number.
+     */
+    private int patientNumber(Profile profile) {
+        int number = findPatient(profile);
+        if (number != NOT_FOUND) {
+            return number;
+        }
+        if (profileCount == profiles.length) {
+            Profile[] newProfiles = new Profile[profiles.length * 2];
+            System.arraycopy(profiles, 0, newProfiles, 0, profileCount);
+            profiles = newProfiles;
+        }
+        profiles[profileCount] = profile;
+        if ((profileCount + 1) * 2 > profileIndex.length) {
+            profileIndex = new int[profileIndex.length * 2];
+            for (int i = 0; i < profileCount; i++) {
+                placePatient(i);
+            }
+        }
+        placePatient(profileCount);
+        return profileCount++;
+    }
+
+    /**
+     * Stores a patient number in the first free bucket of its probe sequence.
+     *
+     * @param number The patient number.
+     */
+    private void placePatient(int number) {
+        Probing.place(profileIndex, number, profiles[number].hashCode());
+    }
+}
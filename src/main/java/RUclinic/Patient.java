@@ -2,14 +2,23 @@ package ruclinic;
 
 /**
  * * The Patient class represents a patient in the clinic, containing a profile
- * and a linked list of completed visits.
+ * and the completed visits. Visits are kept in fixed-size chunks of an
+ * array with a hash index over them, and the total charge is kept up to date
+ * as visits are added and removed.
  * 
  * @author Paldeep Sekhon
  * @author Aditya Ponni
  */
 public class Patient implements Comparable<Patient> {
     private Profile profile;
-    private Visit visits; // a linked list of visits (completed appointments)
+    private Appointment[][] chunks; // appointments of the visits in the order they were added
+    private int count; // number of chunk entries used, including removed visits
+    private int live; // number of visits not removed
+    private int[] index; // hash buckets holding chunk entry + 1, 0 marks an empty bucket
+    private int totalCharge; // sum of the charges of all visits
+    private static final int CHUNK_SHIFT = 6;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT; // visits per chunk
+    private static final int INITIAL_INDEX_CAPACITY = 8;
 
     /**
      * Constructor to initialize a Patient object with a profile.
@@ -18,26 +27,18 @@ public class Patient implements Comparable<Patient> {
      */
     public Patient(Profile profile) {
         this.profile = profile;
-        this.visits = null;
+        clearVisits();
     }
 
     /**
-     * Constructor to initialize a Patient object with a profile.
+     * Gets the total charge of the patient's visits, based on the specialty of
+     * each visit's provider.
      * 
-     * @param profile The profile of the patient.
+     * @return The total charge of all visits.
      */
     public int charge() {
-        int totalCharge = 0;
-        Visit currentVisit = visits;
-
-        while (currentVisit != null) {
-            totalCharge += currentVisit.getAppointment().getProvider().getSpecialty().getCharge();
-            currentVisit = currentVisit.getNext();
-        }
-
         return totalCharge;
     }
-
     /**
      * Checks if two Patient objects are equal based on their profile.
      * 
@@ -54,6 +55,16 @@ public class Patient implements Comparable<Patient> {
         return profile.equals(patient.profile);
     }
 
+    /**
+     * Returns a hash code for the patient, which is the hash code of their profile.
+     * 
+     * @return The hash code of the patient.
+     */
+    @Override
+    public int hashCode() {
+        return profile.hashCode();
+    }
+
     /**
      * Compares this patient with another patient by their profile.
      * 
@@ -78,53 +89,54 @@ public class Patient implements Comparable<Patient> {
     }
 
     /**
-     * Adds a visit to the linked list of visits. If the visit already exists, it
-     * will not be added.
+     * Adds a visit to the end of the patient's visits. If the visit already
+     * exists, it will not be added.
      * 
      * @param visit The visit to be added to the list.
      */
 
     public void addVisit(Visit visit) {
-        if (visits == null) {
-            visits = visit;
+        Appointment appointment = visit.getAppointment();
+        if (find(appointment) != -1) {
+            return; // Duplicate visit found, do not add
+        }
+        int chunk = count >>> CHUNK_SHIFT;
+        if (chunk == chunks.length) {
+            Appointment[][] newChunks = new Appointment[chunks.length * 2][];
+            System.arraycopy(chunks, 0, newChunks, 0, chunks.length);
+            chunks = newChunks;
+        }
+        if (chunks[chunk] == null) {
+            chunks[chunk] = new Appointment[CHUNK_SIZE];
+        }
+        chunks[chunk][count & (CHUNK_SIZE - 1)] = appointment;
+        count++;
+        live++;
+        if (live * 2 > index.length) {
+            reindex(index.length * 2);
         } else {
-            Visit current = visits;
-            while (current.getNext() != null) {
-                // Check for duplicate appointment before adding
-                if (current.getAppointment().equals(visit.getAppointment())) {
-                    return; // Duplicate visit found, do not add
-                }
-                current = current.getNext();
-            }
-            // Ensure to check the last visit before adding the new one
-            if (!current.getAppointment().equals(visit.getAppointment())) {
-                current.setNext(visit);
-            }
+            place(count - 1);
         }
+        totalCharge += appointment.getProvider().getSpecialty().getCharge();
     }
 
     /**
-     * Removes a visit corresponding to a canceled appointment from the linked list.
+     * Removes a visit corresponding to a canceled appointment.
      * 
      * @param appointment The appointment to be removed.
      */
     public void removeVisit(Appointment appointment) {
-        Visit current = visits;
-        Visit previous = null;
-
-        // Traverse the visit list to find the matching appointment
-        while (current != null) {
-            if (current.getAppointment().equals(appointment)) {
-                if (previous == null) {
-                    visits = current.getNext(); // Remove first visit
-                } else {
-                    previous.setNext(current.getNext()); // Remove current visit
-                }
-                current = null; // Explicitly nullify current to help garbage collection
-                return;
-            }
-            previous = current;
-            current = current.getNext();
+        int entry = find(appointment);
+        if (entry == -1) {
+            return;
+        }
+        unindex(bucketOf(entry));
+        Appointment removed = entryAt(entry);
+        chunks[entry >>> CHUNK_SHIFT][entry & (CHUNK_SIZE - 1)] = null;
+        live--;
+        totalCharge -= removed.getProvider().getSpecialty().getCharge();
+        if (count - live > Math.max(live, CHUNK_SIZE)) {
+            compact();
         }
     }
 
@@ -138,20 +150,158 @@ public class Patient implements Comparable<Patient> {
     }
 
     /**
-     * Gets the linked list of visits for the patient.
+     * Gets the visits of the patient as a linked list, in the order they were
+     * added. The list is built on each call, so changing its links does not
+     * change the patient's visits.
      * 
-     * @return The linked list of visits.
+     * @return The first visit of the linked list, or null if there are none.
      */
     public Visit getVisits() {
-        return visits;
+        Visit first = null;
+        Visit last = null;
+        for (int entry = 0; entry < count; entry++) {
+            Appointment appointment = entryAt(entry);
+            if (appointment != null) {
+                Visit visit = new Visit(appointment);
+                if (last == null) {
+                    first = visit;
+                } else {
+                    last.setNext(visit);
+                }
+                last = visit;
+            }
+        }
+        return first;
     }
 
     /**
-     * Sets the linked list of visits for the patient.
+     * Replaces the visits of the patient with the visits of a linked list.
      * 
      * @param visits The linked list of visits to be set.
      */
     public void setVisits(Visit visits) {
-        this.visits = visits;
+        clearVisits();
+        for (Visit visit = visits; visit != null; visit = visit.getNext()) {
+            addVisit(visit);
+        }
+    }
+
+    /**
+     * Gets the number of visits of the patient.
+     * 
+     * @return The number of visits.
+     */
+    public int getVisitCount() {
+        return live;
+    }
+
+    /**
+     * Removes all visits and resets the total charge.
+     */
+    private void clearVisits() {
+        chunks = new Appointment[1][];
+        count = 0;
+        live = 0;
+        index = new int[INITIAL_INDEX_CAPACITY];
+        totalCharge = 0;
+    }
+
+    /**
+     * Gets the appointment stored in a chunk entry.
+     * 
+     * @param entry The number of the chunk entry.
+     * @return The appointment, or null if the visit was removed.
+     */
+    private Appointment entryAt(int entry) {
+        return chunks[entry >>> CHUNK_SHIFT][entry & (CHUNK_SIZE - 1)];
+    }
+
+    /**
+     * Finds the chunk entry of a visit for the appointment.
+     * 
+     * @param appointment The appointment to search for.
+     * @return The chunk entry if found, -1 otherwise.
+     */
+    private int find(Appointment appointment) {
+        int mask = index.length - 1;
+        for (int i = Probing.bucket(appointment.hashCode(), index.length); index[i] != 0; i = (i + 1) & mask) {
+            if (entryAt(index[i] - 1).equals(appointment)) {
+                return index[i] - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the hash code of the visit at a chunk entry.
+     * 
+     * @param entry The number of the chunk entry.
+     * @return The hash code of the visit's appointment.
+     */
+    private int hashAt(int entry) {
+        return entryAt(entry).hashCode();
+    }
+
+    /**
+     * Finds the bucket of the index that refers to a chunk entry.
+     * 
+     * @param entry The number of the chunk entry.
+     * @return The bucket holding the entry.
+     */
+    private int bucketOf(int entry) {
+        return Probing.bucketOf(index, entry, hashAt(entry));
+    }
+
+    /**
+     * Stores a chunk entry in the first free bucket of its probe sequence.
+     * 
+     * @param entry The number of the chunk entry.
+     */
+    private void place(int entry) {
+        Probing.place(index, entry, hashAt(entry));
+    }
+
+    /**
+     * Empties a bucket of the index, shifting later entries of the same probe
+     * run back so lookups never stop early.
+     * 
+     * @param hole The bucket to empty.
+     */
+    private void unindex(int hole) {
+        Probing.unindex(index, hole, this::hashAt);
+    }
+
+    /**
+     * Rebuilds the index with a new number of buckets.
+     * 
+     * @param capacity The new number of buckets, a power of two.
+     */
+    private void reindex(int capacity) {
+        index = new int[capacity];
+        for (int entry = 0; entry < count; entry++) {
+            if (entryAt(entry) != null) {
+                place(entry);
+            }
+        }
+    }
+
+    /**
+     * Moves the remaining visits to the front of the chunks, dropping the
+     * entries of removed visits.
+     */
+    private void compact() {
+        int kept = 0;
+        for (int entry = 0; entry < count; entry++) {
+            Appointment appointment = entryAt(entry);
+            if (appointment != null) {
+                chunks[kept >>> CHUNK_SHIFT][kept & (CHUNK_SIZE - 1)] = appointment;
+                kept++;
+            }
+        }
+        for (int entry = kept; entry < count; entry++) {
+            chunks[entry >>> CHUNK_SHIFT][entry & (CHUNK_SIZE - 1)] = null;
+        }
+        count = kept;
+        reindex(index.length);
     }
 }
@@ -0,0 +1,108 @@
+package ruclinic;
+
+/**
+ * The Probing class holds the linear-probing logic shared by the hash indexes
+ * of the clinic. An index is an int array whose buckets hold an entry number
+ * plus one, with 0 marking an empty bucket, and its length is a power of two.
+ * The owner of an index keeps the entries and tells Probing the hash code of
+ * each one.
+ *
+ * @author Paldeep Sekhon
+ * @author Aditya Ponni
+ */
+final class Probing {
+    /**
+     * Gives the hash code of an entry of an index.
+     */
+    @FunctionalInterface
+    interface Hashes {
+        /**
+         * Gets the hash code of an entry.
+         *
+         * @param entry The entry number.
+         * @return The hash code of the entry.
+         */
+        int hashOf(int entry);
+    }
+
+    /**
+     * Prevents building a Probing object; every method is static.
+     */
+    private Probing() {
+    }
+
+    /**
+     * Gets the home bucket of a hash code in a table of the given length,
+     * mixing the bits with the golden ratio so close hash codes spread out.
+     *
+     * @param hash   The hash code.
+     * @param length The length of the table, a power of two.
+     * @return The first bucket to probe.
+     */
+    static int bucket(int hash, int length) {
+        int mixed = hash * 0x9E3779B9;
+        return (mixed ^ mixed >>> 16) & (length - 1);
+    }
+
+    /**
+     * Gets the bucket probed after the given one.
+     *
+     * @param bucket The bucket just probed.
+     * @param length The length of the table, a power of two.
+     * @return The next bucket to probe.
+     */
+    static int next(int bucket, int length) {
+        return (bucket + 1) & (length - 1);
+    }
+
+    /**
+     * Stores an entry in the first free bucket of its probe sequence.
+     *
+     * @param index The index.
+     * @param entry The entry number.
+     * @param hash  The hash code of the entry.
+     */
+    static void place(int[] index, int entry, int hash) {
+        int i = bucket(hash, index.length);
+        while (index[i] != 0) {
+            i = next(i, index.length);
+        }
+        index[i] = entry + 1;
+    }
+
+    /**
+     * Finds the bucket of an index that refers to an entry in it.
+     *
+     * @param index The index.
+     * @param entry The entry number, which must be in the index.
+     * @param hash  The hash code of the entry.
+     * @return The bucket holding the entry.
+     */
+    static int bucketOf(int[] index, int entry, int hash) {
+        int i = bucket(hash, index.length);
+        while (index[i] != entry + 1) {
+            i = next(i, index.length);
+        }
+        return i;
+    }
+
+    /**
+     * Empties a bucket of an index, shifting later entries of the same probe
+     * run back so lookups never stop early and no tombstones are needed.
+     *
+     * @param index  The index.
+     * @param hole   The bucket to empty.
+     * @param hashes The hash codes of the entries in the index.
+     */
+    static void unindex(int[] index, int hole, Hashes hashes) {
+        int mask = index.length - 1;
+        for (int i = (hole + 1) & mask; index[i] != 0; i = (i + 1) & mask) {
+            int home = bucket(hashes.hashOf(index[i] - 1), index.length);
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                index[hole] = index[i];
+                hole = i;
+            }
+        }
+        index[hole] = 0;
+    }
+}
@@ -45,6 +45,28 @@ public class Profile implements Comparable<Profile> {
                 dob.equals(profile.dob);
     }
 
+    /**
+     * Overrides the hashCode() method to match equals(), using first name, last name, and date of birth.
+     * 
+     * @return The hash code of the profile.
+     */
+    @Override
+    public int hashCode() {
+        return hash(fname, lname, dob);
+    }
+
+    /**
+     * Computes the hash code a profile with the given name and date of birth would have.
+     * 
+     * @param fname First name of the person.
+     * @param lname Last name of the person.
+     * @param dob   Date of birth of the person.
+     * @return The hash code of such a profile.
+     */
+    static int hash(String fname, String lname, Date dob) {
+        return (fname.hashCode() * 31 + lname.hashCode()) * 31 + dob.hashCode();
+    }
+
      /**
     * Implements the compareTo() method for comparing two profiles.
     * Comparison is done based on last name, then first name, and then date of birth.
@@ -74,7 +96,18 @@ public class Profile implements Comparable<Profile> {
      */
     @Override
     public String toString() {
-        return String.format("%s %s %s", fname, lname, dob);
+        return appendTo(new StringBuilder()).toString();
+    }
+
+    /**
+     * Appends the profile in the format "FirstName LastName DateOfBirth" to a buffer.
+     * 
+     * @param buffer The buffer to append to.
+     * @return The buffer.
+     */
+    public StringBuilder appendTo(StringBuilder buffer) {
+        buffer.append(fname).append(' ').append(lname).append(' ');
+        return dob.appendTo(buffer);
     }
      
      /**
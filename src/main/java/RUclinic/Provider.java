@@ -3,22 +3,37 @@ package ruclinic;
 /**
  * Enum representing the providers at the clinic.
  * Each provider has a designated location and specialty.
+ * The providers are declared in alphabetical order, so ordinals sort the same
+ * way as names.
  * 
  * @author Paldeep Sekhon
  * @author Aditya Ponni
  */
 public enum Provider {
-    PATEL(Location.BRIDGEWATER, Specialty.FAMILY),
-    LIM(Location.BRIDGEWATER, Specialty.PEDIATRICIAN),
-    ZIMNES(Location.CLARK, Specialty.FAMILY),
+    CERAVOLO(Location.EDISON, Specialty.PEDIATRICIAN),
     HARPER(Location.CLARK, Specialty.FAMILY),
     KAUR(Location.PRINCETON, Specialty.ALLERGIST),
-    TAYLOR(Location.PISCATAWAY, Specialty.PEDIATRICIAN),
+    LIM(Location.BRIDGEWATER, Specialty.PEDIATRICIAN),
+    PATEL(Location.BRIDGEWATER, Specialty.FAMILY),
     RAMESH(Location.MORRISTOWN, Specialty.ALLERGIST),
-    CERAVOLO(Location.EDISON, Specialty.PEDIATRICIAN);
+    TAYLOR(Location.PISCATAWAY, Specialty.PEDIATRICIAN),
+    ZIMNES(Location.CLARK, Specialty.FAMILY);
 
     private final Location location;
     private final Specialty specialty;
+    private final String text; // the provider as PROVIDER_NAME, LOCATION, SPECIALTY
+    private final String label; // the provider as printed in an appointment row
+    private static final Provider[] BY_NAME = new Provider[32]; // open-addressing table keyed by name hash
+
+    static {
+        for (Provider provider : values()) {
+            int i = bucket(provider.name(), 0, provider.name().length());
+            while (BY_NAME[i] != null) {
+                i = (i + 1) & (BY_NAME.length - 1);
+            }
+            BY_NAME[i] = provider;
+        }
+    }
 
     /**
      * Constructor for the Provider enum.
@@ -29,6 +44,9 @@ public enum Provider {
     Provider(Location location, Specialty specialty) {
         this.location = location;
         this.specialty = specialty;
+        this.text = String.format("%s, %s, %s", this.name(), location, specialty);
+        this.label = "[" + this.name() + ", " + location.getCity() + ", " + location.getCounty() + " "
+                + location.getZip() + ", " + specialty.getNameOnly() + "]";
     }
      /**
      * Gets the location of the provider.
@@ -54,7 +72,16 @@ public enum Provider {
      */
     @Override
     public String toString() {
-        return String.format("%s, %s, %s", this.name(), location, specialty);
+        return text;
+    }
+
+    /**
+     * Gets the provider as it is printed at the end of an appointment row.
+     * 
+     * @return A string in the format "[PROVIDER_NAME, CITY, COUNTY ZIP, SPECIALTY_NAME]".
+     */
+    public String getLabel() {
+        return label;
     }
     /**
      * Static method that converts a string input (representing the provider's name)
@@ -64,10 +91,71 @@ public enum Provider {
      * @return The corresponding Provider enum, or null if the input is invalid.
      */
     public static Provider fromString(String name) {
-        try {
-            return Provider.valueOf(name.toUpperCase());
-        } catch (IllegalArgumentException e) {
-            return null; // Return null if the provider does not exist
+        return lookup(name, 0, name.length());
+    }
+
+    /**
+     * Finds the provider named by a range of characters, in any letter case,
+     * without building a string.
+     * 
+     * @param text  The characters holding the name.
+     * @param start The offset of the first character of the name.
+     * @param end   The offset just after the last character of the name.
+     * @return The provider, or null if no provider has the name.
+     */
+    static Provider lookup(CharSequence text, int start, int end) {
+        for (int i = bucket(text, start, end); BY_NAME[i] != null; i = (i + 1) & (BY_NAME.length - 1)) {
+            String name = BY_NAME[i].name();
+            if (name.length() == end - start && matches(name, text, start)) {
+                return BY_NAME[i];
+            }
+        }
+        return null; // Return null if the provider does not exist
+    }
+
+    /**
+     * Checks if characters match a provider name, ignoring the case of ASCII
+     * letters.
+     * 
+     * @param name  The provider name, in upper case.
+     * @param text  The characters to check.
+     * @param start The offset of the first character to check.
+     * @return true if the characters spell the name, false otherwise.
+     */
+    private static boolean matches(String name, CharSequence text, int start) {
+        for (int i = 0; i < name.length(); i++) {
+            if (upper(text.charAt(start + i)) != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the home bucket of a name in the lookup table, hashing the name as
+     * if it were in upper case.
+     * 
+     * @param text  The characters holding the name.
+     * @param start The offset of the first character of the name.
+     * @param end   The offset just after the last character of the name.
+     * @return The first bucket to probe.
+     */
+    private static int bucket(CharSequence text, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = hash * 31 + upper(text.charAt(i));
         }
+        return Probing.bucket(hash, BY_NAME.length);
+    }
+
+    /**
+     * Converts an ASCII lower case letter to upper case.
+     * 
+     * @param c The character.
+     * @return The character in upper case if it is a lower case letter, the
+     *         character itself otherwise.
+     */
+    private static char upper(char c) {
+        return c >= 'a' && c <= 'z' ? (char) (c - ('a' - 'A')) : c;
     }
 }
@@ -0,0 +1,128 @@
+package ruclinic;
+
+/**
+ * The RangeQuery class selects the appointments on the dates in a range,
+ * optionally only those of a provider, a location, a county or a patient.
+ * A query is answered from the ordered view of a List that is sorted by its
+ * narrowest condition: the patient view for a patient, the county view for a
+ * provider, location or county, and the date view otherwise. The query starts
+ * at the first appointment of the range in that view and stops after the last,
+ * so it costs O(log n + k) for k appointments walked, instead of a pass over
+ * the whole book.
+ * Every view breaks ties by date, timeslot and provider, so the results are in
+ * the same order as the appointment list.
+ *
+ * @author Paldeep Sekhon
+ * @author Aditya Ponni
+ */
+public final class RangeQuery {
+    private final int firstDay; // epoch day of the first date in the range
+    private final int lastDay; // epoch day of the last date in the range, inclusive
+    private final Provider provider;
+    private final Location location;
+    private final String county; // the county of the view, from the narrowest condition that has one
+    private final Profile patient;
+
+    /**
+     * Constructs a query. Each condition left null matches every appointment.
+     *
+     * @param first    The first date of the range.
+     * @param last     The last date of the range, inclusive.
+     * @param provider The provider, or null for any provider.
+     * @param location The location, or null for any location.
+     * @param county   The county, or null for any county.
+     * @param patient  The profile of the patient, or null for any patient.
+     */
+    public RangeQuery(Date first, Date last, Provider provider, Location location, String county, Profile patient) {
+        this.firstDay = first.toEpochDay();
+        this.lastDay = last.toEpochDay();
+        this.provider = provider;
+        this.location = location;
+        this.patient = patient;
+        if (county != null) {
+            this.county = county;
+        } else if (location != null) {
+            this.county = location.getCounty();
+        } else if (provider != null) {
+            this.county = provider.getLocation().getCounty();
+        } else {
+            this.county = null;
+        }
+    }
+
+    /**
+     * Builds a query of every appointment dated before a day.
+     *
+     * @param day The first day the query leaves out.
+     * @return The query.
+     */
+    static RangeQuery before(Date day) {
+        return new RangeQuery(Date.ofEpochDay(0), Date.ofEpochDay(day.toEpochDay() - 1), null, null, null, null);
+    }
+
+    /**
+     * Runs the query over a list.
+     *
+     * @param list The list to query.
+     * @return The matching appointments in date/timeslot/provider order. The
+     *         list must not change while they are read.
+     */
+    Iterable<Appointment> run(List list) {
+        if (patient != null) {
+            return list.byPatient().range(this::patientPosition, this::matches);
+        }
+        if (county != null) {
+            return list.byLocation().range(this::countyPosition, this::matches);
+        }
+        return list.byAppointment().range(this::datePosition, this::matches);
+    }
+
+    /**
+     * Checks if an appointment in the range meets every condition of the
+     * query.
+     *
+     * @param appointment The appointment.
+     * @return true if the appointment matches, false otherwise.
+     */
+    boolean matches(Appointment appointment) {
+        Provider other = appointment.getProvider();
+        return (provider == null || other == provider)
+                && (location == null || other.getLocation() == location)
+                && (county == null || other.getLocation().getCounty().equals(county))
+                && (patient == null || appointment.getPatient().equals(patient))
+                && datePosition(appointment) == 0;
+    }
+
+    /**
+     * Places an appointment against the range in the patient view.
+     *
+     * @param appointment The appointment.
+     * @return Negative before the range, 0 in it, positive after it.
+     */
+    private int patientPosition(Appointment appointment) {
+        int comparison = appointment.getPatient().compareTo(patient);
+        return comparison != 0 ? comparison : datePosition(appointment);
+    }
+
+    /**
+     * Places an appointment against the range in the county view.
+     *
+     * @param appointment The appointment.
+     * @return Negative before the range, 0 in it, positive after it.
+     */
+    private int countyPosition(Appointment appointment) {
+        int comparison = appointment.getProvider().getLocation().getCounty().compareTo(county);
+        return comparison != 0 ? comparison : datePosition(appointment);
+    }
+
+    /**
+     * Places an appointment against the dates of the range.
+     *
+     * @param appointment The appointment.
+     * @return Negative before the range, 0 in it, positive after it.
+     */
+    private int datePosition(Appointment appointment) {
+        int day = appointment.getDate().toEpochDay();
+        return day < firstDay ? -1 : day > lastDay ? 1 : 0;
+    }
+}
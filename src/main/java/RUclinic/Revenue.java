@@ -0,0 +1,166 @@
+package ruclinic;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The Revenue class totals the charges of appointments over a range of dates.
+ * The appointments are split into chunks that are totaled in parallel on the
+ * common fork-join pool, each into an array of cents indexed by provider
+ * ordinal, and the arrays are added together as the chunks are joined. Totals
+ * by county and by specialty are folded from the provider totals, since every
+ * provider has one location and one specialty.
+ *
+ * @author Paldeep Sekhon
+ * @author Aditya Ponni
+ */
+public final class Revenue {
+    static final int CHUNK_SIZE = 1 << 13; // appointments totaled by one task
+    private static final Provider[] PROVIDERS = Provider.values();
+    private static final long[] CENTS = new long[PROVIDERS.length]; // charge in cents by provider ordinal
+
+    static {
+        for (Provider provider : PROVIDERS) {
+            CENTS[provider.ordinal()] = provider.getSpecialty().getCharge() * 100L;
+        }
+    }
+
+    /**
+     * Adds the charges of a range of items to totals indexed by provider
+     * ordinal.
+     */
+    interface Chunk {
+        /**
+         * Adds the charges of the items from one position up to another.
+         *
+         * @param from   The first position, inclusive.
+         * @param to     The last position, exclusive.
+         * @param totals The totals in cents to add to, indexed by provider
+         *               ordinal.
+         */
+        void addTo(int from, int to, long[] totals);
+    }
+
+    /**
+     * Not instantiable; all methods are static.
+     */
+    private Revenue() {
+    }
+
+    /**
+     * Totals the items from 0 to count in parallel, splitting them into ranges
+     * of at most grain items.
+     *
+     * @param count The number of items.
+     * @param grain The largest range totaled by one task.
+     * @param chunk Totals one range.
+     * @return The totals in cents, indexed by provider ordinal.
+     */
+    static long[] total(int count, int grain, Chunk chunk) {
+        return ForkJoinPool.commonPool().invoke(new Task(0, count, grain, chunk));
+    }
+
+    /**
+     * Gets the charge of an appointment with a provider.
+     *
+     * @param provider The ordinal of the provider.
+     * @return The charge in cents.
+     */
+    static long cents(int provider) {
+        return CENTS[provider];
+    }
+
+    /**
+     * Adds the charges of the appointments on the days in a range to totals
+     * indexed by provider ordinal.
+     *
+     * @param appointments The appointments.
+     * @param from         The first position, inclusive.
+     * @param to           The last position, exclusive.
+     * @param firstDay     The epoch day the range of dates starts on.
+     * @param lastDay      The epoch day the range of dates ends on, inclusive.
+     * @param totals       The totals in cents to add to.
+     */
+    static void addTo(Appointment[] appointments, int from, int to, int firstDay, int lastDay, long[] totals) {
+        for (int i = from; i < to; i++) {
+            int day = appointments[i].getDate().toEpochDay();
+            if (day >= firstDay && day <= lastDay) {
+                totals[appointments[i].getProvider().ordinal()] += CENTS[appointments[i].getProvider().ordinal()];
+            }
+        }
+    }
+
+    /**
+     * Folds provider totals into county totals.
+     *
+     * @param byProvider The totals in cents indexed by provider ordinal.
+     * @return The totals in cents indexed by county rank, in the order of
+     *         Location.getCounties().
+     */
+    public static long[] byCounty(long[] byProvider) {
+        long[] totals = new long[Location.getCounties().length];
+        for (Provider provider : PROVIDERS) {
+            totals[provider.getLocation().getCountyRank()] += byProvider[provider.ordinal()];
+        }
+        return totals;
+    }
+
+    /**
+     * Folds provider totals into specialty totals.
+     *
+     * @param byProvider The totals in cents indexed by provider ordinal.
+     * @return The totals in cents indexed by specialty ordinal.
+     */
+    public static long[] bySpecialty(long[] byProvider) {
+        long[] totals = new long[Specialty.values().length];
+        for (Provider provider : PROVIDERS) {
+            totals[provider.getSpecialty().ordinal()] += byProvider[provider.ordinal()];
+        }
+        return totals;
+    }
+
+    /**
+     * A fork-join task that totals a range of items, splitting it in half
+     * until the halves are at most the grain.
+     */
+    private static class Task extends RecursiveTask<long[]> {
+        private static final long serialVersionUID = 1L;
+        private final int from;
+        private final int to;
+        private final int grain;
+        private final Chunk chunk;
+
+        /**
+         * Constructs a task over a range of items.
+         *
+         * @param from  The first position, inclusive.
+         * @param to    The last position, exclusive.
+         * @param grain The largest range totaled without splitting.
+         * @param chunk Totals one range.
+         */
+        Task(int from, int to, int grain, Chunk chunk) {
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (to - from <= grain) {
+                long[] totals = new long[PROVIDERS.length];
+                chunk.addTo(from, to, totals);
+                return totals;
+            }
+            int middle = (from + to) >>> 1;
+            Task left = new Task(from, middle, grain, chunk);
+            left.fork();
+            long[] totals = new Task(middle, to, grain, chunk).compute();
+            long[] leftTotals = left.join();
+            for (int i = 0; i < totals.length; i++) {
+                totals[i] += leftTotals[i];
+            }
+            return totals;
+        }
+    }
+}
@@ -1,11 +1,97 @@
 package ruclinic;
 
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.util.Arrays;
+
+import javax.management.JMException;
+
 /**
+ * Starts the scheduler. With no arguments the commands are read from the
+ * console; with a file path the commands are read from that file in batch mode.
+ * With -journal and a journal path first, the appointment book is loaded from
+ * the snapshot next to the journal and the journal changes made after it, every
+ * change is written to the journal, and a new snapshot is written on exit.
+ * With -sharded first, the appointments are kept in one shard per location,
+ * each changed by its own worker thread.
+ * 
  * @author Paldeep Sekhon
  * @author Aditya Ponni
  */
 public class RunProject1 {
-    public static void main(String[] args) {
-        new Scheduler().run();
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 2 && args[0].equals("-journal")) {
+            runJournaled(Paths.get(args[1]), Arrays.copyOfRange(args, 2, args.length));
+            return;
+        }
+        if (args.length >= 1 && args[0].equals("-sharded")) {
+            try (ShardedBook book = new ShardedBook()) {
+                run(book, new MedicalRecord(), Arrays.copyOfRange(args, 1, args.length));
+            }
+            return;
+        }
+        run(new List(), new MedicalRecord(), args);
+    }
+
+    /**
+     * Runs the scheduler over a journaled booking service.
+     * 
+     * @param journalPath The path of the journal file.
+     * @param args        The remaining command line arguments.
+     * @throws IOException if the journal or the snapshot cannot be used.
+     */
+    private static void runJournaled(Path journalPath, String[] args) throws IOException {
+        Path snapshotPath = journalPath.resolveSibling(journalPath.getFileName() + ".snapshot");
+        try (Journal journal = new Journal(journalPath)) {
+            BookingService service = new BookingService();
+            MedicalRecord patients = Snapshot.read(snapshotPath, service);
+            service.recover(journal, patients);
+            run(service, patients, args);
+            Snapshot.write(service, patients, snapshotPath);
+        }
+    }
+
+    /**
+     * Runs a scheduler over the console, or over the command file in batch mode
+     * when one is given. The command statistics of a console scheduler are
+     * published over JMX; a batch run is too short to be watched, so it does
+     * not pay to start JMX.
+     * 
+     * @param book     The appointments the scheduler starts with.
+     * @param patients The patients the scheduler starts with.
+     * @param args     The command line arguments, optionally the command file.
+     * @throws IOException if the command file cannot be read.
+     */
+    private static void run(AppointmentBook book, MedicalRecord patients, String[] args) throws IOException {
+        Metrics metrics = Scheduler.newMetrics();
+        DatePolicy datePolicy = new DatePolicy(Clock.systemDefaultZone());
+        if (args.length == 0) {
+            try {
+                metrics.register();
+            } catch (JMException e) {
+                System.err.println("Command statistics are not published over JMX: " + e.getMessage());
+            }
+            new Scheduler(book, patients, datePolicy, metrics, System.out).run();
+        } else {
+            new Scheduler(book, patients, datePolicy, metrics, batchOutput()).runBatch(Paths.get(args[0]));
+        }
+    }
+
+    /**
+     * Creates the buffered output stream used in batch mode.
+     * 
+     * @return A stream over standard output that is only flushed when asked.
+     */
+    private static PrintStream batchOutput() {
+        return new PrintStream(
+                new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), OUTPUT_BUFFER_SIZE), false);
     }
 }
@@ -9,16 +9,138 @@ package ruclinic;
  * @author Aditya Ponni
  */
 
-import java.util.Calendar;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.Arrays;
 import java.util.Scanner;
 
 public class Scheduler {
-    private List appointmentList;
+    private AppointmentBook appointmentList;
+    private MedicalRecord medicalRecord; // one patient per person who has booked
+    private final DatePolicy datePolicy; // which dates can be booked
+    private final CommandStats[] stats; // the statistics of each command in COMMANDS, then of other lines
+    private final MedicalRecord history; // the visits of past days, read under its lock
+    private final Sweeper sweeper; // moves past days into the history, or null if another thread does
+    private Outcome outcome; // how the command being executed ended
+    private String rejection; // the message of the last line that failed its checks
+    private PrintStream out; // where command results are written
+    private static final int BATCH_BUFFER_SIZE = 1 << 16;
+    private static final int ROW_BUFFER_SIZE = 1 << 13;
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+    private final StringBuilder rows = new StringBuilder(ROW_BUFFER_SIZE * 2); // reused for every printed list
+    private final Tokenizer tokens = new Tokenizer(); // reused for every command line
+    private static final String[] COMMANDS = { "S", "C", "R", "PA", "PP", "PL", "PS", "RP", "RC", "RS", "NA",
+            "QA", "QP", "LP", "CP", "IM", "ST", "Q" };
+    private static final String[] IMPORTED = { "S" }; // the only command an imported line may have
+    private static final String[] SPECIALTIES = Arrays.stream(Specialty.values()).map(Specialty::name)
+            .toArray(String[]::new);
+    private static final String[] COUNTIES = Location.getCounties();
+    private static final String[] CITIES = Arrays.stream(Location.values()).map(Location::name)
+            .toArray(String[]::new);
       /**
      * Constructor to initialize a Scheduler object with an empty appointment list.
      */
     public Scheduler() {
-        appointmentList = new List();
+        this(System.out);
+    }
+    /**
+     * Constructor to initialize a Scheduler object that writes its results to the given stream.
+     * 
+     * @param out The stream command results are written to.
+     */
+    public Scheduler(PrintStream out) {
+        this(new List(), out);
+    }
+    /**
+     * Constructor to initialize a Scheduler object over an existing appointment book,
+     * which may be shared with other schedulers when it is a BookingService.
+     * 
+     * @param appointmentList The appointments the scheduler starts with.
+     * @param out The stream command results are written to.
+     */
+    Scheduler(AppointmentBook appointmentList, PrintStream out) {
+        this(appointmentList, new MedicalRecord(), out);
+    }
+    /**
+     * Constructor to initialize a Scheduler object over an existing appointment book and
+     * medical record, such as the ones loaded from a snapshot.
+     * 
+     * @param appointmentList The appointments the scheduler starts with.
+     * @param medicalRecord The patients the scheduler starts with.
+     * @param out The stream command results are written to.
+     */
+    Scheduler(AppointmentBook appointmentList, MedicalRecord medicalRecord, PrintStream out) {
+        this(appointmentList, medicalRecord, new DatePolicy(Clock.systemDefaultZone()), out);
+    }
+    /**
+     * Constructor to initialize a Scheduler object that checks appointment dates against the given policy,
+     * which may be shared with other schedulers.
+     * 
+     * @param appointmentList The appointments the scheduler starts with.
+     * @param medicalRecord The patients the scheduler starts with.
+     * @param datePolicy The policy of which dates can be booked.
+     * @param out The stream command results are written to.
+     */
+    Scheduler(AppointmentBook appointmentList, MedicalRecord medicalRecord, DatePolicy datePolicy, PrintStream out) {
+        this(appointmentList, medicalRecord, datePolicy, newMetrics(), out);
+    }
+    /**
+     * Constructor to initialize a Scheduler object that records the latency and outcome of each command in
+     * the given metrics, which may be shared with other schedulers. The scheduler sweeps the past days of the
+     * book into the medical record itself.
+     * 
+     * @param appointmentList The appointments the scheduler starts with.
+     * @param medicalRecord The patients the scheduler starts with.
+     * @param datePolicy The policy of which dates can be booked.
+     * @param metrics The statistics to record into, made by newMetrics.
+     * @param out The stream command results are written to.
+     */
+    Scheduler(AppointmentBook appointmentList, MedicalRecord medicalRecord, DatePolicy datePolicy, Metrics metrics,
+            PrintStream out) {
+        this(appointmentList, medicalRecord, datePolicy, metrics, medicalRecord,
+                new Sweeper(appointmentList, medicalRecord, datePolicy), out);
+    }
+    /**
+     * Constructor to initialize a Scheduler object that bills the visits of past days from the given history,
+     * which may be shared with other schedulers, and sweeps past days with the given sweeper, or leaves
+     * sweeping to another thread.
+     * 
+     * @param appointmentList The appointments the scheduler starts with.
+     * @param medicalRecord The patients the scheduler starts with.
+     * @param datePolicy The policy of which dates can be booked.
+     * @param metrics The statistics to record into, made by newMetrics.
+     * @param history The visits of past days, which is locked while the scheduler reads it.
+     * @param sweeper The sweeper of the book into the history, or null if the book is swept elsewhere.
+     * @param out The stream command results are written to.
+     */
+    Scheduler(AppointmentBook appointmentList, MedicalRecord medicalRecord, DatePolicy datePolicy, Metrics metrics,
+            MedicalRecord history, Sweeper sweeper, PrintStream out) {
+        this.appointmentList = appointmentList;
+        this.medicalRecord = medicalRecord;
+        this.datePolicy = datePolicy;
+        this.history = history;
+        this.sweeper = sweeper;
+        this.out = out;
+        this.stats = new CommandStats[COMMANDS.length + 1];
+        for (int i = 0; i < COMMANDS.length; i++) {
+            stats[i] = metrics.stats(COMMANDS[i]);
+        }
+        stats[COMMANDS.length] = metrics.stats(Metrics.OTHER);
+    }
+    /**
+     * Creates empty statistics for every scheduler command.
+     * 
+     * @return The new metrics.
+     */
+    static Metrics newMetrics() {
+        return new Metrics(COMMANDS);
     }
     /**
      * Runs the scheduler, continuously accepting and processing user commands until the 'Q' command is entered.
@@ -26,409 +148,759 @@ public class Scheduler {
      */
     public void run() {
         Scanner scanner = new Scanner(System.in);
-        System.out.println("Scheduler is running.\n");
-        while (true) {
-            String commandLine = scanner.nextLine().trim();
-            if (commandLine.isEmpty()) {
-                continue;
+        out.println("Scheduler is running.\n");
+        while (execute(scanner.nextLine())) {
+            out.flush();
+        }
+        out.flush();
+    }
+    /**
+     * Runs the scheduler over a file of commands, one command per line, until the 'Q' command or the end of the file.
+     * The output is the same as typing the commands in interactive mode, but it is only flushed at the end,
+     * so the scheduler should be given a stream without automatic flushing.
+     * 
+     * @param commands The path of the command file.
+     * @throws IOException if the command file cannot be read.
+     */
+    public void runBatch(Path commands) throws IOException {
+        out.println("Scheduler is running.\n");
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(Files.newInputStream(commands), Charset.defaultCharset()), BATCH_BUFFER_SIZE)) {
+            String commandLine;
+            while ((commandLine = reader.readLine()) != null && execute(commandLine)) {
+                // each line is handled by execute
             }
-
-            String[] tokens = commandLine.split(",");
-            String command = tokens[0];
-
-            switch (command) {
-                case "S":
-                    scheduleAppointment(tokens);
-                    break;
-                case "C":
-                    cancelAppointment(tokens);
-                    break;
-                case "R":
-                    rescheduleAppointment(tokens);
-                    break;
-                case "PA":
-                    if (appointmentList.size() > 0) {
-                        System.out.println();
-                        System.out.println("** Appointments ordered by date/time/provider **");
-                        appointmentList.sortByAppointment();
-                        for (int i = 0; i < appointmentList.size(); i++) {
-                            System.out.println(appointmentList.get(i).toString());
-                        }
-                        System.out.println("** end of list **");
-                    } else {
-                        System.out.println("The schedule calendar is empty.");
-                    }
-                    break;
-                case "PP":
-                    if (appointmentList != null && appointmentList.size() > 0) {
-                        System.out.println();
-                        System.out.println("** Appointments ordered by patient/date/time **");
-                        appointmentList.sortByPatient();
-                        for (int i = 0; i < appointmentList.size(); i++) {
-                            System.out.println(appointmentList.get(i).toString());
-                        }
-                        System.out.println("** end of list **");
-                    } else {
-                        System.out.println("The schedule calendar is empty.");
-                    }
-                    break;
-                case "PL":
-                    if (appointmentList.size() > 0) {
-                        System.out.println();
-                        System.out.println("** Appointments ordered by county/date/time **");
-                        appointmentList.sortByLocation();
-                        for (int i = 0; i < appointmentList.size(); i++) {
-                            System.out.println(appointmentList.get(i).toString());
-                        }
-                        System.out.println("** end of list **");
-                    } else {
-                        System.out.println("The schedule calendar is empty.");
-                    }
-                    break;
-                case "PS":
-                    printBillingStatements();
-                    break;
-                case "Q":
-                    System.out.println("Scheduler terminated.");
-                    return;
-                default:
-                    System.out.println("Invalid command!");
-                    break;
+        } finally {
+            out.flush();
+        }
+    }
+    /**
+     * Runs the scheduler over a stream of commands from a client, flushing the result of each command
+     * before reading the next, until the 'Q' command or the end of the stream.
+     * 
+     * @param commands The reader of the client's commands.
+     * @throws IOException if the commands cannot be read.
+     */
+    public void run(BufferedReader commands) throws IOException {
+        out.println("Scheduler is running.\n");
+        try {
+            String commandLine;
+            while ((commandLine = commands.readLine()) != null && execute(commandLine)) {
+                out.flush();
             }
-
+        } finally {
+            out.flush();
         }
     }
-     /**
-     * Schedules an appointment based on input tokens. Validates the appointment date, provider, and time slot before adding it to the appointment list.
+    /**
+     * Processes a single command line and writes its result. The time the command takes and how it ends are
+     * recorded in the statistics of the command. The first command of each day first moves the appointments
+     * of past days into the visits of their patients.
      * 
-     * @param tokens The input data for the appointment to be scheduled.
+     * @param commandLine The command line to process.
+     * @return false if the command was 'Q' and the scheduler should stop, true otherwise.
      */
-    private void scheduleAppointment(String[] tokens) {
-        if (tokens.length != 7) {
-            System.out.println("Invalid command!");
-            return;
+    public boolean execute(CharSequence commandLine) {
+        if (sweeper != null) {
+            sweeper.sweep(); // on the first command of a day, moves the past days out of the book, untimed
         }
-
-        String[] appointmentDateParts = tokens[1].split("/");
-        int appointmentMonth = Integer.parseInt(appointmentDateParts[0]);
-        int appointmentDay = Integer.parseInt(appointmentDateParts[1]);
-        int appointmentYear = Integer.parseInt(appointmentDateParts[2]);
-
-        String[] dobParts = tokens[5].split("/");
-        int dobMonth = Integer.parseInt(dobParts[0]);
-        int dobDay = Integer.parseInt(dobParts[1]);
-        int dobYear = Integer.parseInt(dobParts[2]);
-
-        Date appointmentDate = new Date(appointmentYear, appointmentMonth, appointmentDay);
-        Date dob = new Date(dobYear, dobMonth, dobDay);
-        Calendar today = Calendar.getInstance();
-        Calendar appointmentCal = Calendar.getInstance();
-        appointmentCal.set(appointmentYear, appointmentMonth - 1, appointmentDay);
-        Calendar sixMonths = Calendar.getInstance();
-        sixMonths.add(Calendar.MONTH, 6);
-        Calendar dobCal = Calendar.getInstance();
-        dobCal.set(dobYear, dobMonth - 1, dobDay);
-        String timeSlot = tokens[2];
-
-        if (!dob.isValid()) {
-            System.out.println("Patient dob: " + dob.toString() + " is not a valid calendar date.");
-            return;
+        long start = System.nanoTime();
+        if (tokens.reset(commandLine) == 0) {
+            return true;
         }
-        if (isSameDay(dobCal, today) || dobCal.after(today)) {
-            System.out.println("Patient dob: " + dob.toString() + " is today or a date after today.");
-            return;
+        int command = tokens.find(0, COMMANDS);
+        outcome = Outcome.OK;
+        boolean running = true;
+        if (command < 0) {
+            reject(Outcome.INVALID_COMMAND, "Invalid command!");
+        } else {
+            running = dispatch(COMMANDS[command]);
         }
-        String providerLast = tokens[6];
-        if (!isValidProvider(providerLast)) {
-            System.out.println(providerLast + " - provider doesn't exist.");
+        stats[command < 0 ? COMMANDS.length : command].record(outcome, System.nanoTime() - start);
+        return running;
+    }
+    /**
+     * Runs a command on the tokens of the command line.
+     * 
+     * @param command The command, one of COMMANDS.
+     * @return false if the command was 'Q' and the scheduler should stop, true otherwise.
+     */
+    private boolean dispatch(String command) {
+        switch (command) {
+            case "S":
+                scheduleAppointment();
+                break;
+            case "C":
+                cancelAppointment();
+                break;
+            case "R":
+                rescheduleAppointment();
+                break;
+            case "PA":
+                if (appointmentList.size() > 0) {
+                    out.println();
+                    out.println("** Appointments ordered by date/time/provider **");
+                    printRows(appointmentList.byAppointment());
+                    out.println("** end of list **");
+                } else {
+                    out.println("The schedule calendar is empty.");
+                }
+                break;
+            case "PP":
+                if (appointmentList.size() > 0) {
+                    out.println();
+                    out.println("** Appointments ordered by patient/date/time **");
+                    printRows(appointmentList.byPatient());
+                    out.println("** end of list **");
+                } else {
+                    out.println("The schedule calendar is empty.");
+                }
+                break;
+            case "PL":
+                if (appointmentList.size() > 0) {
+                    out.println();
+                    out.println("** Appointments ordered by county/date/time **");
+                    printRows(appointmentList.byLocation());
+                    out.println("** end of list **");
+                } else {
+                    out.println("The schedule calendar is empty.");
+                }
+                break;
+            case "PS":
+                printBillingStatements();
+                break;
+            case "RP":
+            case "RC":
+            case "RS":
+                printRevenue(command);
+                break;
+            case "NA":
+                printOpenings();
+                break;
+            case "QA":
+                printRange(rangeQuery());
+                break;
+            case "QP":
+                printRange(patientQuery());
+                break;
+            case "LP":
+                printPatientAppointments();
+                break;
+            case "CP":
+                cancelPatientAppointments();
+                break;
+            case "IM":
+                importAppointments();
+                break;
+            case "ST":
+                printStats();
+                break;
+            case "Q":
+                out.println("Scheduler terminated.");
+                return false;
+            default:
+                reject(Outcome.INVALID_COMMAND, "Invalid command!");
+                break;
+        }
+        return true;
+    }
+    /**
+     * Writes the message of a command that was rejected and records why.
+     * 
+     * @param reason The reason the command was rejected.
+     * @param message The message to write.
+     */
+    private void reject(Outcome reason, String message) {
+        outcome = reason;
+        out.println(message);
+    }
+    /**
+     * Imports the appointments of a file of S command lines, given as IM,path. Every line is checked as an
+     * S command would check it, and the valid appointments are booked as one batch, which also rejects
+     * the ones that clash with the book or with an earlier line of the file. A report ends with one line
+     * per rejected line, giving its line number, the reason and the message S would have printed.
+     */
+    private void importAppointments() {
+        if (tokens.size() != 2) {
+            reject(Outcome.INVALID_COMMAND, "Invalid command!");
             return;
         }
-        try {
-            int timeSlotIndex = Integer.parseInt(timeSlot);
-            if (timeSlotIndex < 1 || timeSlotIndex > Timeslot.values().length) {
-                System.out.println(timeSlot + " is not a valid time slot.");
-                return;
+        String path = tokens.text(1);
+        Appointment[] batch = new Appointment[16];
+        int[] lineOf = new int[16]; // the line number of each appointment in the batch
+        int count = 0;
+        String[] failures = new String[16]; // the report lines of the lines that failed their checks
+        int[] failedLines = new int[16];
+        int failed = 0;
+        int lines = 0;
+        MedicalRecord pending = new MedicalRecord(); // patients of the file who are not in the record yet
+        try (BufferedReader reader = Files.newBufferedReader(Path.of(path), Charset.defaultCharset())) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines++;
+                if (tokens.reset(line) == 0) {
+                    continue;
+                }
+                Appointment appointment = tokens.find(0, IMPORTED) == 0 ? appointmentOf(pending)
+                        : fail(Outcome.INVALID_COMMAND, "Invalid command!");
+                if (appointment == null) {
+                    if (failed == failures.length) {
+                        failures = Arrays.copyOf(failures, failed * 2);
+                        failedLines = Arrays.copyOf(failedLines, failed * 2);
+                    }
+                    failures[failed] = reportLine(lines, outcome, rejection);
+                    failedLines[failed++] = lines;
+                    continue;
+                }
+                if (count == batch.length) {
+                    batch = Arrays.copyOf(batch, count * 2);
+                    lineOf = Arrays.copyOf(lineOf, count * 2);
+                }
+                batch[count] = appointment;
+                lineOf[count++] = lines;
             }
-        } catch (NumberFormatException e) {
-            System.out.println(timeSlot + " is not a valid time slot.");
+        } catch (IOException | InvalidPathException e) {
+            reject(Outcome.IO_ERROR, path + " cannot be read.");
             return;
         }
-
-        String fname = tokens[3];
-        String lname = tokens[4];
-
-        if (!isValidAppointment(appointmentDate, tokens[2], tokens[3], tokens[4], dob, tokens[6])) {
-            System.out.println("Appointment date: " + appointmentDate.toString() + " is not a valid calendar date.");
-            return;
+        BookingResult[] results = appointmentList.bookAll(Arrays.copyOf(batch, count));
+        StringBuilder report = new StringBuilder();
+        int booked = 0;
+        int f = 0;
+        for (int i = 0; i < count; i++) {
+            while (f < failed && failedLines[f] < lineOf[i]) {
+                report.append(failures[f++]);
+            }
+            if (results[i] == BookingResult.BOOKED) {
+                addPatient(batch[i].getPatient());
+                booked++;
+            } else if (results[i] == BookingResult.DUPLICATE) {
+                report.append(reportLine(lineOf[i], Outcome.DUPLICATE, duplicateMessage(batch[i])));
+            } else {
+                String slot = Integer.toString(batch[i].getTimeslot().ordinal() + 1);
+                report.append(reportLine(lineOf[i], Outcome.UNAVAILABLE, unavailableMessage(batch[i], slot)));
+            }
         }
-
-        // Check if date is before or equal to today
-        if (isSameDay(appointmentCal, today) || appointmentCal.before(today)) {
-            System.out.println("Appointment date: " + appointmentDate.toString() + " is today or a date before today.");
-            return;
+        while (f < failed) {
+            report.append(failures[f++]);
+        }
+        outcome = Outcome.OK;
+        out.println();
+        out.println("** Import of " + path + ": " + (count + failed) + " records, " + booked + " booked, "
+                + (count + failed - booked) + " rejected **");
+        out.print(report);
+        out.println("** end of list **");
+    }
+    /**
+     * Formats the report line of a rejected import line.
+     * 
+     * @param line The line number in the file.
+     * @param reason The reason the line was rejected.
+     * @param message The message S would have printed for the line.
+     * @return The report line, ending with a line separator.
+     */
+    private static String reportLine(int line, Outcome reason, String message) {
+        return "Line " + line + " " + reason + ": " + message + LINE_SEPARATOR;
+    }
+    /**
+     * Prints the count, latency percentiles and outcomes of every command that has run.
+     */
+    private void printStats() {
+        out.println();
+        out.println("** Command statistics in microseconds **");
+        for (CommandStats entry : stats) {
+            if (entry.getCount() > 0) {
+                out.println(entry);
+            }
         }
-        // check if its a weekend
-        int dayWeek = appointmentCal.get(Calendar.DAY_OF_WEEK);
-        if (dayWeek == Calendar.SATURDAY || dayWeek == Calendar.SUNDAY) {
-            System.out.println("Appointment date: " + appointmentDate.toString() + " is Saturday or Sunday.");
+        out.println("** end of list **");
+    }
+    /**
+     * Prints one line per appointment. The rows are appended to a reusable buffer that is written out
+     * whenever it fills, so printing a long list formats nothing and allocates little per row.
+     * 
+     * @param appointments The appointments to print, in order.
+     */
+    private void printRows(Iterable<Appointment> appointments) {
+        rows.setLength(0);
+        for (Appointment appointment : appointments) {
+            appointment.appendTo(rows).append(LINE_SEPARATOR);
+            if (rows.length() >= ROW_BUFFER_SIZE) {
+                out.append(rows);
+                rows.setLength(0);
+            }
+        }
+        out.append(rows);
+        rows.setLength(0);
+    }
+     /**
+     * Schedules an appointment based on the tokens of the command line. Validates the patient's date of birth,
+     * the provider, the time slot and the appointment date before adding it to the appointment list.
+     */
+    private void scheduleAppointment() {
+        Appointment appointment = appointmentOf(null);
+        if (appointment == null) {
+            out.println(rejection);
             return;
         }
-        // check if date is within next 6 months
-        if (appointmentCal.after(sixMonths)) {
-            System.out.println("Appointment date: " + appointmentDate.toString() + " is not within six months.");
+        BookingResult result = appointmentList.book(appointment);
+        if (result == BookingResult.DUPLICATE) {
+            reject(Outcome.DUPLICATE, duplicateMessage(appointment));
             return;
         }
 
-        Appointment appointment = new Appointment(appointmentDate, Timeslot.values()[Integer.parseInt(tokens[2]) - 1],
-                new Profile(tokens[3], tokens[4], dob), Provider.valueOf(tokens[6].toUpperCase()));
-        if (appointmentList.contains(appointment)) {
-            System.out.println(
-                    fname + " " + lname + " " + dob.toString() + " has an existing appointment at the same time slot");
+        if (result == BookingResult.UNAVAILABLE) {
+            reject(Outcome.UNAVAILABLE, unavailableMessage(appointment, tokens.text(2)));
             return;
         }
 
-        for (int i = 0; i < appointmentList.size(); i++) {
-            Appointment existingAppointment = appointmentList.get(i);
-            if (existingAppointment.getProvider().equals(appointment.getProvider()) &&
-                    existingAppointment.getTimeslot().equals(appointment.getTimeslot()) &&
-                    existingAppointment.getDate().equals(appointment.getDate())) {
-                System.out.println(
-                        "[" + appointment.getProvider().toString() + "]" + " is not available at slot " + timeSlot);
-                return;
-            }
+        addPatient(appointment.getPatient());
+        out.println(appointment.toString() + " booked.");
+    }
+     /**
+     * Builds the appointment of an S command line after checking each of its fields.
+     * 
+     * @param pending The patients of earlier lines who are not in the medical record yet, so that every
+     *                line of a new patient shares one profile, or null for a single line.
+     * @return The appointment, or null if a field is not valid, with the reason and the message recorded.
+     */
+    private Appointment appointmentOf(MedicalRecord pending) {
+        Date appointmentDate;
+        Date dob;
+        if (tokens.size() != 7 || (appointmentDate = tokens.date(1)) == null || (dob = tokens.date(5)) == null) {
+            return fail(Outcome.INVALID_COMMAND, "Invalid command!");
         }
+        Date today = datePolicy.today();
 
-        appointmentList.add(appointment);
-        System.out.println(appointment.toString() + " booked.");
-    }
+        if (!dob.isValid()) {
+            return fail(Outcome.INVALID_DOB, "Patient dob: " + dob.toString() + " is not a valid calendar date.");
+        }
+        if (dob.compareTo(today) >= 0) {
+            return fail(Outcome.FUTURE_DOB, "Patient dob: " + dob.toString() + " is today or a date after today.");
+        }
+        Provider provider = tokens.provider(6);
+        if (provider == null) {
+            return fail(Outcome.UNKNOWN_PROVIDER, tokens.text(6) + " - provider doesn't exist.");
+        }
+        Timeslot timeslot = tokens.timeslot(2);
+        if (timeslot == null) {
+            return fail(Outcome.INVALID_TIMESLOT, tokens.text(2) + " is not a valid time slot.");
+        }
+        if (!appointmentDate.isValid()) {
+            return fail(Outcome.INVALID_DATE,
+                    "Appointment date: " + appointmentDate.toString() + " is not a valid calendar date.");
+        }
 
-    private static boolean isSameDay(Calendar cal1, Calendar cal2) {
-        return cal1.get(Calendar.YEAR) == cal2.get(Calendar.YEAR) &&
-                cal1.get(Calendar.DAY_OF_YEAR) == cal2.get(Calendar.DAY_OF_YEAR);
-    }
+        switch (datePolicy.check(appointmentDate)) {
+            case PAST:
+                return fail(Outcome.PAST_DATE,
+                        "Appointment date: " + appointmentDate.toString() + " is today or a date before today.");
+            case WEEKEND:
+                return fail(Outcome.WEEKEND, "Appointment date: " + appointmentDate.toString() + " is Saturday or Sunday.");
+            case HOLIDAY:
+                return fail(Outcome.HOLIDAY, "Appointment date: " + appointmentDate.toString() + " is a clinic holiday.");
+            case BEYOND:
+                return fail(Outcome.BEYOND_HORIZON,
+                        "Appointment date: " + appointmentDate.toString() + " is not within six months.");
+            default:
+                break;
+        }
 
+        String fname = tokens.text(3);
+        String lname = tokens.text(4);
+        Patient patient = medicalRecord.findPatient(fname, lname, dob);
+        Profile profile = patient != null ? patient.getProfile()
+                : pending != null ? pending.register(fname, lname, dob).getProfile() : new Profile(fname, lname, dob);
+        return new Appointment(appointmentDate, timeslot, profile, provider);
+    }
+     /**
+     * Records why a command line was rejected without writing the message yet.
+     * 
+     * @param reason The reason the command line was rejected.
+     * @param message The message to write for it.
+     * @return null, so a method building a result can return it directly.
+     */
+    private Appointment fail(Outcome reason, String message) {
+        outcome = reason;
+        rejection = message;
+        return null;
+    }
+     /**
+     * Adds a patient who has booked to the medical record, if the patient is not in it yet.
+     * 
+     * @param profile The profile of the patient.
+     */
+    private void addPatient(Profile profile) {
+        if (medicalRecord.findPatient(profile) == null) {
+            medicalRecord.add(new Patient(profile));
+        }
+    }
+     /**
+     * Gets the message of an appointment that the patient already has.
+     * 
+     * @param appointment The appointment.
+     * @return The message.
+     */
+    private static String duplicateMessage(Appointment appointment) {
+        Profile patient = appointment.getPatient();
+        return patient.getFname() + " " + patient.getLname() + " " + patient.getDob().toString()
+                + " has an existing appointment at the same time slot";
+    }
      /**
-     * Cancels an existing appointment based on input tokens.
+     * Gets the message of an appointment whose provider is taken at its timeslot.
      * 
-     * @param tokens The input data identifying the appointment to be canceled.
+     * @param appointment The appointment.
+     * @param slot The timeslot as it was entered.
+     * @return The message.
+     */
+    private static String unavailableMessage(Appointment appointment, String slot) {
+        return "[" + appointment.getProvider().toString() + "]" + " is not available at slot " + slot;
+    }
+     /**
+     * Cancels an existing appointment based on the tokens of the command line.
      */
-    private void cancelAppointment(String[] tokens) {
-        if (tokens.length != 7) {
-            System.out.println("Invalid command!");
+    private void cancelAppointment() {
+        Date appointmentDate;
+        Date dob;
+        if (tokens.size() != 7 || (appointmentDate = tokens.date(1)) == null || (dob = tokens.date(5)) == null) {
+            reject(Outcome.INVALID_COMMAND, "Invalid command!");
+            return;
+        }
+        Timeslot timeslot = tokens.timeslot(2);
+        if (timeslot == null) {
+            reject(Outcome.INVALID_TIMESLOT, tokens.text(2) + " is not a valid time slot.");
             return;
         }
 
-        String[] appointmentDateParts = tokens[1].split("/");
-        int appointmentMonth = Integer.parseInt(appointmentDateParts[0]);
-        int appointmentDay = Integer.parseInt(appointmentDateParts[1]);
-        int appointmentYear = Integer.parseInt(appointmentDateParts[2]);
-
-        String[] dobParts = tokens[5].split("/");
-        int dobMonth = Integer.parseInt(dobParts[0]);
-        int dobDay = Integer.parseInt(dobParts[1]);
-        int dobYear = Integer.parseInt(dobParts[2]);
-
-        Date appointmentDate = new Date(appointmentYear, appointmentMonth, appointmentDay);
-        Date dob = new Date(dobYear, dobMonth, dobDay);
-
-        Appointment appointment = findAppointment(appointmentDate, tokens[2], tokens[3], tokens[4], dob);
+        String fname = tokens.text(3);
+        String lname = tokens.text(4);
+        Appointment appointment = appointmentList.cancel(appointmentDate, timeslot, profileOf(fname, lname, dob));
         if (appointment != null) {
-            appointmentList.remove(appointment);
-            System.out.println(appointment.getDate() + " " + appointment.getTimeslot() + " " + appointment.getPatient()
+            out.println(appointment.getDate() + " " + appointment.getTimeslot() + " " + appointment.getPatient()
                     + " " + "has been canceled.");
         } else {
-            String timeslotString = Timeslot.values()[Integer.parseInt(tokens[2]) - 1].toString();
-            System.out.println(appointmentDate + " " + timeslotString + " " + tokens[3] + " " + tokens[4]
+            reject(Outcome.NOT_FOUND, appointmentDate + " " + timeslot + " " + fname + " " + lname
                     + " " + dob + " does not exist.");
         }
     }
      /**
-     * Reschedules an existing appointment to a new time slot based on input tokens.
-     * 
-     * @param tokens The input data identifying the appointment to be rescheduled.
+     * Reschedules an existing appointment to a new time slot based on the tokens of the command line.
      */
-    private void rescheduleAppointment(String[] tokens) {
-        if (tokens.length != 7) {
-            System.out.println("Invalid command!");
+    private void rescheduleAppointment() {
+        Date appointmentDate;
+        Date dob;
+        if (tokens.size() != 7 || (appointmentDate = tokens.date(1)) == null || (dob = tokens.date(5)) == null) {
+            reject(Outcome.INVALID_COMMAND, "Invalid command!");
+            return;
+        }
+        Timeslot timeslot = tokens.timeslot(2);
+        if (timeslot == null) {
+            reject(Outcome.INVALID_TIMESLOT, tokens.text(2) + " is not a valid time slot.");
             return;
         }
 
-        String[] appointmentDateParts = tokens[1].split("/");
-        int appointmentMonth = Integer.parseInt(appointmentDateParts[0]);
-        int appointmentDay = Integer.parseInt(appointmentDateParts[1]);
-        int appointmentYear = Integer.parseInt(appointmentDateParts[2]);
-
-        String[] dobParts = tokens[5].split("/");
-        int dobMonth = Integer.parseInt(dobParts[0]);
-        int dobDay = Integer.parseInt(dobParts[1]);
-        int dobYear = Integer.parseInt(dobParts[2]);
-
-        Date appointmentDate = new Date(appointmentYear, appointmentMonth, appointmentDay);
-        Date dob = new Date(dobYear, dobMonth, dobDay);
-
-        Appointment appointment = findAppointment(appointmentDate, tokens[2], tokens[3], tokens[4], dob);
+        String fname = tokens.text(3);
+        String lname = tokens.text(4);
+        Appointment appointment = appointmentList.find(appointmentDate, timeslot, profileOf(fname, lname, dob));
 
         if (appointment == null) {
-            String timeslotString = Timeslot.values()[Integer.parseInt(tokens[2]) - 1].toString();
-            System.out.println(appointmentDate + " " + timeslotString + " " + tokens[3] + " " + tokens[4] + " " + dob
+            reject(Outcome.NOT_FOUND, appointmentDate + " " + timeslot + " " + fname + " " + lname + " " + dob
                     + " does not exist.");
             return;
         }
 
-        if (!isValidTimeSlot(tokens[6])) {
-            System.out.println(tokens[6] + " is not a valid time slot.");
+        Timeslot newTimeslot = tokens.timeslot(6);
+        if (newTimeslot == null) {
+            reject(Outcome.INVALID_TIMESLOT, tokens.text(6) + " is not a valid time slot.");
             return;
         }
 
-        int newTimeSlotIndex = Integer.parseInt(tokens[6]) - 1;
-
-        for (int i = 0; i < appointmentList.size(); i++) {
-            Appointment existingAppointment = appointmentList.get(i);
-            if (existingAppointment.getProvider().equals(appointment.getProvider()) &&
-                    existingAppointment.getDate().equals(appointment.getDate()) &&
-                    existingAppointment.getTimeslot().ordinal() == newTimeSlotIndex) {
-                System.out.println(
-                        "[" + appointment.getProvider().toString() + "]" + " is not available at slot " + tokens[6]);
-                return;
-            }
+        BookingResult result = appointmentList.reschedule(appointment, newTimeslot);
+        if (result == BookingResult.UNAVAILABLE) {
+            reject(Outcome.UNAVAILABLE,
+                    "[" + appointment.getProvider().toString() + "]" + " is not available at slot " + tokens.text(6));
+            return;
         }
-
-        appointment.setTimeSlot(Timeslot.values()[newTimeSlotIndex]);
-        System.out.println("Rescheduled to " + appointment.toString());
+        if (result == BookingResult.NOT_FOUND) {
+            reject(Outcome.NOT_FOUND, appointmentDate + " " + timeslot + " " + fname + " " + lname + " " + dob
+                    + " does not exist.");
+            return;
+        }
+        rows.setLength(0);
+        Appointment.appendTo(rows.append("Rescheduled to "), appointmentDate, newTimeslot, appointment.getPatient(),
+                appointment.getProvider()).append(LINE_SEPARATOR);
+        out.append(rows);
+        rows.setLength(0);
     }
-    /**
- * Validates the appointment's date, time slot, patient details, and provider.
- * Ensures that the date and provider are valid, and checks that the time slot is within the valid range.
+/**
+ * Gets the profile of a patient, reusing the profile in the medical record if the patient has booked before.
  * 
- * @param date The date of the appointment.
- * @param timeSlot The time slot of the appointment.
  * @param fname The first name of the patient.
  * @param lname The last name of the patient.
  * @param dob The date of birth of the patient.
- * @param providerLastName The last name of the provider.
- * @return true if the appointment details are valid, false otherwise.
+ * @return The profile of the patient.
  */
-    private boolean isValidAppointment(Date date, String timeSlot, String fname, String lname, Date dob,
-            String providerLastName) {
-        if (!date.isValid() || !dob.isValid() || !isValidProvider(providerLastName))
-            return false;
-
-        try {
-            int timeSlotIndex = Integer.parseInt(timeSlot);
-            if (timeSlotIndex < 1 || timeSlotIndex > Timeslot.values().length)
-                return false;
-        } catch (NumberFormatException e) {
-            return false;
+    private Profile profileOf(String fname, String lname, Date dob) {
+        Patient patient = medicalRecord.findPatient(fname, lname, dob);
+        return patient != null ? patient.getProfile() : new Profile(fname, lname, dob);
+    }
+/**
+ * Prints billing statements for all patients, sorted by patient.
+ * Displays the total amount due for each patient based on the specialty of their provider, for the
+ * appointments in the book and the visits of past days swept out of it.
+ * The appointment book is left as it is, so statements can be printed again.
+ */
+    private void printBillingStatements() {
+        out.println();
+        out.println("** Billing statement ordered by patient **");
+        Billing billing = new Billing();
+        billing.addAll(appointmentList.byAppointment());
+        synchronized (history) {
+            billing.addVisits(history);
         }
-
-        return true;
+        billing.print(out);
+        out.println("** end of list **");
     }
 /**
- * Validates if the provider's last name corresponds to a valid provider in the system.
+ * Prints the revenue of the appointments and past visits on the dates in a range, by provider (RP), by
+ * county (RC) or by specialty (RS).
  * 
- * @param providerLastName The last name of the provider.
- * @return true if the provider exists, false otherwise.
+ * @param command The command, RP, RC or RS, followed on the command line by the first and last dates of
+ *                the range.
  */
-    private boolean isValidProvider(String providerLastName) {
-        try {
-            Provider.valueOf(providerLastName.toUpperCase());
-            return true;
-        } catch (IllegalArgumentException e) {
-            return false;
+    private void printRevenue(String command) {
+        Date first;
+        Date last;
+        if (tokens.size() != 3 || (first = tokens.date(1)) == null || (last = tokens.date(2)) == null) {
+            reject(Outcome.INVALID_COMMAND, "Invalid command!");
+            return;
         }
+        for (Date date : new Date[] { first, last }) {
+            if (!date.isValid()) {
+                reject(Outcome.INVALID_DATE, "Date: " + date + " is not a valid calendar date.");
+                return;
+            }
+        }
+        long[] byProvider = appointmentList.revenueByProvider(first, last);
+        synchronized (history) {
+            history.addRevenue(first, last, byProvider);
+        }
+        out.println();
+        switch (command) {
+            case "RP":
+                out.println("** Revenue by provider " + first + " to " + last + " **");
+                for (Provider provider : Provider.values()) {
+                    out.println(provider.name() + " " + Billing.dollars(byProvider[provider.ordinal()]));
+                }
+                break;
+            case "RC":
+                out.println("** Revenue by county " + first + " to " + last + " **");
+                long[] byCounty = Revenue.byCounty(byProvider);
+                String[] counties = Location.getCounties();
+                for (int i = 0; i < counties.length; i++) {
+                    out.println(counties[i] + " " + Billing.dollars(byCounty[i]));
+                }
+                break;
+            default:
+                out.println("** Revenue by specialty " + first + " to " + last + " **");
+                long[] bySpecialty = Revenue.bySpecialty(byProvider);
+                for (Specialty specialty : Specialty.values()) {
+                    out.println(specialty.name() + " " + Billing.dollars(bySpecialty[specialty.ordinal()]));
+                }
+                break;
+        }
+        out.println("** end of list **");
     }
 /**
- * Finds an appointment based on the input data for date, time slot, patient name, and date of birth.
- * Searches through the appointment list to find a matching appointment.
+ * Prints the earliest open timeslots from a date on, optionally only those of a provider or of the providers
+ * with a specialty and/or in a county.
  * 
- * @param date The date of the appointment.
- * @param timeSlot The time slot of the appointment.
- * @param fname The first name of the patient.
- * @param lname The last name of the patient.
- * @param dob The date of birth of the patient.
- * @return The Appointment object if found, or null if not found.
+ * The command line is NA, the first date, the most timeslots to print, then any number of provider,
+ * specialty or county names, such as NA,12/1/2026,3,FAMILY,Somerset.
  */
-    private Appointment findAppointment(Date date, String timeSlot, String fname, String lname, Date dob) {
-        Profile patientProfile = new Profile(fname, lname, dob);
-        int timeSlotIndex = Integer.parseInt(timeSlot) - 1;
+    private void printOpenings() {
+        Date from;
+        int count;
+        if (tokens.size() < 3 || (from = tokens.date(1)) == null || (count = tokens.number(2)) < 1) {
+            reject(Outcome.INVALID_COMMAND, "Invalid command!");
+            return;
+        }
+        if (!from.isValid()) {
+            reject(Outcome.INVALID_DATE, "Date: " + from + " is not a valid calendar date.");
+            return;
+        }
+        Provider[] providers = Provider.values();
+        for (int field = 3; field < tokens.size(); field++) {
+            Provider provider = tokens.provider(field);
+            String specialty = provider == null ? tokens.matchIgnoreCase(field, SPECIALTIES) : null;
+            String county = provider == null && specialty == null ? tokens.matchIgnoreCase(field, COUNTIES) : null;
+            if (provider == null && specialty == null && county == null) {
+                reject(Outcome.UNKNOWN_NAME, tokens.text(field) + " - provider, specialty or county doesn't exist.");
+                return;
+            }
+            providers = Availability.filter(providers, provider,
+                    specialty == null ? null : Specialty.valueOf(specialty), county);
+        }
 
-        for (int i = 0; i < appointmentList.size(); i++) {
-            Appointment appt = appointmentList.get(i);
-            if (appt.getDate().equals(date) && appt.getPatient().equals(patientProfile)
-                    && appt.getTimeslot().ordinal() == timeSlotIndex) {
-                return appt;
+        Opening[] openings = Availability.earliest(appointmentList, datePolicy, providers, from, count);
+        if (openings.length == 0) {
+            out.println("No open timeslots found.");
+            return;
+        }
+        out.println();
+        out.println("** Open timeslots from " + from + " **");
+        for (Opening opening : openings) {
+            out.println(opening);
+        }
+        out.println("** end of list **");
+    }
+/**
+ * Builds the range query of a QA command line: QA, the first and last dates, then any provider, city or county
+ * names, at most one of each kind, such as QA,12/1/2026,12/2/2026,EDISON. Writes the error if the line is
+ * not valid.
+ * 
+ * @return The query, or null if the command line is not valid.
+ */
+    private RangeQuery rangeQuery() {
+        Date first;
+        Date last;
+        if (tokens.size() < 3 || (first = tokens.date(1)) == null || (last = tokens.date(2)) == null) {
+            reject(Outcome.INVALID_COMMAND, "Invalid command!");
+            return null;
+        }
+        Provider provider = null;
+        Location location = null;
+        String county = null;
+        for (int field = 3; field < tokens.size(); field++) {
+            Provider namedProvider = tokens.provider(field);
+            String city = namedProvider == null ? tokens.matchIgnoreCase(field, CITIES) : null;
+            String namedCounty = namedProvider == null && city == null ? tokens.matchIgnoreCase(field, COUNTIES) : null;
+            if (namedProvider == null && city == null && namedCounty == null) {
+                reject(Outcome.UNKNOWN_NAME, tokens.text(field) + " - provider, location or county doesn't exist.");
+                return null;
             }
+            if (namedProvider != null && provider != null || city != null && location != null
+                    || namedCounty != null && county != null) {
+                reject(Outcome.INVALID_COMMAND, "Invalid command!");
+                return null;
+            }
+            provider = namedProvider != null ? namedProvider : provider;
+            location = city != null ? Location.valueOf(city) : location;
+            county = namedCounty != null ? namedCounty : county;
         }
-        return null;
+        return validRange(first, last) ? new RangeQuery(first, last, provider, location, county, null) : null;
     }
 /**
- * Validates if the time slot provided is within the valid range of time slots.
+ * Builds the range query of a QP command line: QP, the first and last dates, then the patient's first name,
+ * last name and date of birth. Writes the error if the line is not valid.
  * 
- * @param timeSlot The time slot to validate.
- * @return true if the time slot is valid, false otherwise.
+ * @return The query, or null if the command line is not valid.
  */
-    private boolean isValidTimeSlot(String timeSlot) {
-        try {
-            int slot = Integer.parseInt(timeSlot);
-            return slot >= 1 && slot <= Timeslot.values().length;
-        } catch (NumberFormatException e) {
-            return false;
+    private RangeQuery patientQuery() {
+        Date first;
+        Date last;
+        Date dob;
+        if (tokens.size() != 6 || (first = tokens.date(1)) == null || (last = tokens.date(2)) == null
+                || (dob = tokens.date(5)) == null) {
+            reject(Outcome.INVALID_COMMAND, "Invalid command!");
+            return null;
         }
+        if (!dob.isValid()) {
+            reject(Outcome.INVALID_DOB, "Patient dob: " + dob + " is not a valid calendar date.");
+            return null;
+        }
+        Profile patient = profileOf(tokens.text(3), tokens.text(4), dob);
+        return validRange(first, last) ? new RangeQuery(first, last, null, null, null, patient) : null;
     }
 /**
- * Prints billing statements for all patients, sorted by patient.
- * Displays the total amount due for each patient based on the specialty of their provider.
+ * Builds the query of the coming appointments of a patient, from today to the end of the dates that can be
+ * booked, for an LP or CP command line: the command, then the patient's first name, last name and date of birth.
+ * Writes the error if the line is not valid.
+ * 
+ * @return The query, or null if the command line is not valid.
  */
-    private void printBillingStatements() {
-        appointmentList.sortByPatient();
-        System.out.println();
-        System.out.println("** Billing statement ordered by patient **");
-        if (appointmentList.size() == 0) {
-            System.out.println("** end of list **");
+    private RangeQuery comingAppointmentsQuery() {
+        Date dob;
+        if (tokens.size() != 4 || (dob = tokens.date(3)) == null) {
+            reject(Outcome.INVALID_COMMAND, "Invalid command!");
+            return null;
+        }
+        if (!dob.isValid()) {
+            reject(Outcome.INVALID_DOB, "Patient dob: " + dob + " is not a valid calendar date.");
+            return null;
+        }
+        Profile patient = profileOf(tokens.text(1), tokens.text(2), dob);
+        return new RangeQuery(datePolicy.today(), datePolicy.horizonEnd(), null, null, null, patient);
+    }
+/**
+ * Prints the coming appointments of a patient, read from the patient's part of the patient view.
+ */
+    private void printPatientAppointments() {
+        RangeQuery query = comingAppointmentsQuery();
+        if (query == null) {
             return;
         }
-
-        int count = 1;
-        Appointment firstAppointment = appointmentList.get(0);
-        Profile currentPatient = firstAppointment.getPatient();
-        double totalAmountDue = 0;
-
-        for (int i = 0; i < appointmentList.size(); i++) {
-            Appointment appointment = appointmentList.get(i);
-            Profile patient = appointment.getPatient();
-            int charge = calculateCharge(appointment.getProvider().getSpecialty());
-
-            if (patient.equals(currentPatient)) {
-                totalAmountDue += charge;
-            } else {
-                System.out.printf("(%d) %s [amount due: $%,.2f]%n", count++, currentPatient, totalAmountDue);
-                currentPatient = patient;
-                totalAmountDue = charge;
+        Iterable<Appointment> appointments = appointmentList.range(query);
+        if (!appointments.iterator().hasNext()) {
+            out.println("No appointments found.");
+            return;
+        }
+        out.println();
+        out.println("** Coming appointments of the patient ordered by date/time/provider **");
+        printRows(appointments);
+        out.println("** end of list **");
+    }
+/**
+ * Cancels all the coming appointments of a patient, such as one who has moved away, and prints them.
+ */
+    private void cancelPatientAppointments() {
+        RangeQuery query = comingAppointmentsQuery();
+        if (query == null) {
+            return;
+        }
+        Appointment[] canceled = appointmentList.cancelAll(query);
+        if (canceled.length == 0) {
+            reject(Outcome.NOT_FOUND, "No appointments found.");
+            return;
+        }
+        out.println();
+        out.println("** Canceled appointments of the patient ordered by date/time/provider **");
+        printRows(Arrays.asList(canceled));
+        out.println("** end of list **");
+    }
+/**
+ * Checks that both dates of a range are calendar dates, writing the error if one is not.
+ * 
+ * @param first The first date of the range.
+ * @param last The last date of the range.
+ * @return true if both dates are valid, false otherwise.
+ */
+    private boolean validRange(Date first, Date last) {
+        for (Date date : new Date[] { first, last }) {
+            if (!date.isValid()) {
+                reject(Outcome.INVALID_DATE, "Date: " + date + " is not a valid calendar date.");
+                return false;
             }
         }
-
-        System.out.printf("(%d) %s [amount due: $%,.2f]%n", count, currentPatient, totalAmountDue);
-        System.out.println("** end of list **");
-
-        appointmentList = null;
+        return true;
     }
 /**
- * Calculates the charge for a given specialty.
- * The charge is determined by the specialty of the provider.
+ * Prints the appointments that match a range query.
  * 
- * @param specialty The specialty of the provider.
- * @return The charge amount based on the specialty.
+ * @param query The query, or null if the command line was not valid and nothing should be printed.
  */
-    private int calculateCharge(Specialty specialty) {
-        switch (specialty) {
-            case FAMILY:
-                return 250;
-            case PEDIATRICIAN:
-                return 300;
-            case ALLERGIST:
-                return 350;
-            default:
-                return 0;
+    private void printRange(RangeQuery query) {
+        if (query == null) {
+            return;
+        }
+        Iterable<Appointment> appointments = appointmentList.range(query);
+        if (!appointments.iterator().hasNext()) {
+            out.println("No appointments found.");
+            return;
         }
+        out.println();
+        out.println("** Appointments in range ordered by date/time/provider **");
+        printRows(appointments);
+        out.println("** end of list **");
     }
 }
@@ -0,0 +1,482 @@
+package ruclinic;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * The ShardedBook class is a thread-safe appointment book split into one shard
+ * per location. Every provider works at one location, so no booking ever
+ * checks or changes more than one shard. Each shard is a List owned by a
+ * single worker thread: a change is queued to the worker of the provider's
+ * location and runs there, so a shard needs no locks and bookings at different
+ * locations run on different cores.
+ * Changes that name no provider, such as a cancel, ask every shard at once, and
+ * the ordered listings are copied by every worker at once and merged, since
+ * each shard's part is already in order.
+ *
+ * @author Paldeep Sekhon
+ * @author Aditya Ponni
+ */
+public class ShardedBook implements AppointmentBook, AutoCloseable {
+    private static final Location[] LOCATIONS = Location.values();
+    private final List[] shards; // appointments of the providers at each location, by location ordinal
+    private final ExecutorService[] workers; // the one thread that reads and changes the shard of the same index
+    private final AtomicInteger size; // number of appointments in all shards
+
+    /**
+     * Constructs an empty book and starts the worker of each shard. The workers
+     * are daemon threads, so a book that is not closed does not keep the
+     * program running.
+     */
+    public ShardedBook() {
+        shards = new List[LOCATIONS.length];
+        workers = new ExecutorService[LOCATIONS.length];
+        for (int i = 0; i < LOCATIONS.length; i++) {
+            shards[i] = new List();
+            String name = "shard-" + LOCATIONS[i].getCity();
+            workers[i] = Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        size = new AtomicInteger();
+    }
+
+    /**
+     * Books an appointment on the worker of the provider's location.
+     *
+     * @param appointment The appointment to book.
+     * @return BOOKED if the appointment was added, DUPLICATE if the book already
+     *         has it, or UNAVAILABLE if the provider is taken at the timeslot.
+     */
+    @Override
+    public BookingResult book(Appointment appointment) {
+        BookingResult result = call(shardOf(appointment.getProvider()), shard -> shard.book(appointment));
+        if (result == BookingResult.BOOKED) {
+            size.incrementAndGet();
+        }
+        return result;
+    }
+
+    /**
+     * Books a batch of appointments. The batch is split by location and every
+     * worker books its part at the same time, each part as one change of its
+     * shard.
+     *
+     * @param batch The appointments to book.
+     * @return The result of each appointment, at the same position as in the
+     *         batch.
+     */
+    @Override
+    public BookingResult[] bookAll(Appointment[] batch) {
+        int[] counts = new int[shards.length];
+        for (Appointment appointment : batch) {
+            counts[shardOf(appointment.getProvider())]++;
+        }
+        Appointment[][] parts = new Appointment[shards.length][];
+        int[][] positions = new int[shards.length][]; // batch position of each appointment of a part
+        for (int i = 0; i < shards.length; i++) {
+            parts[i] = new Appointment[counts[i]];
+            positions[i] = new int[counts[i]];
+            counts[i] = 0;
+        }
+        for (int i = 0; i < batch.length; i++) {
+            int shard = shardOf(batch[i].getProvider());
+            parts[shard][counts[shard]] = batch[i];
+            positions[shard][counts[shard]++] = i;
+        }
+        BookingResult[][] partResults = each(i -> shard -> shard.bookAll(parts[i]), BookingResult[][]::new);
+        BookingResult[] results = new BookingResult[batch.length];
+        for (int i = 0; i < shards.length; i++) {
+            for (int j = 0; j < partResults[i].length; j++) {
+                results[positions[i][j]] = partResults[i][j];
+                if (partResults[i][j] == BookingResult.BOOKED) {
+                    size.incrementAndGet();
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Finds the appointment a patient has at a timeslot on the given date,
+     * asking every shard at the same time and taking the first match in
+     * location order.
+     *
+     * @param date     The date of the appointment.
+     * @param timeslot The timeslot of the appointment.
+     * @param patient  The profile of the patient.
+     * @return The appointment if found, or null if not found.
+     */
+    @Override
+    public Appointment find(Date date, Timeslot timeslot, Profile patient) {
+        Appointment[] found = all(shard -> shard.find(date, timeslot, patient), Appointment[]::new);
+        int shard = firstOf(found);
+        return shard < 0 ? null : found[shard];
+    }
+
+    /**
+     * Cancels the appointment a patient has at a timeslot on the given date.
+     * Every shard is asked for the appointment at the same time, and only the
+     * first shard in location order that has it cancels it.
+     *
+     * @param date     The date of the appointment.
+     * @param timeslot The timeslot of the appointment.
+     * @param patient  The profile of the patient.
+     * @return The canceled appointment, or null if there was none.
+     */
+    @Override
+    public Appointment cancel(Date date, Timeslot timeslot, Profile patient) {
+        int shard = firstOf(all(list -> list.find(date, timeslot, patient), Appointment[]::new));
+        if (shard < 0) {
+            return null;
+        }
+        Appointment appointment = call(shard, list -> list.cancel(date, timeslot, patient));
+        if (appointment != null) {
+            size.decrementAndGet();
+        }
+        return appointment;
+    }
+
+    /**
+     * Cancels every appointment that matches a range query. Every worker
+     * cancels its shard's part at the same time.
+     *
+     * @param query The dates and conditions of the appointments to cancel.
+     * @return The canceled appointments in date/timeslot/provider order.
+     */
+    @Override
+    public Appointment[] cancelAll(RangeQuery query) {
+        Appointment[] canceled = merge(all(shard -> shard.cancelAll(query), Appointment[][]::new),
+                List::compareSlots);
+        size.addAndGet(-canceled.length);
+        return canceled;
+    }
+
+    /**
+     * Removes every appointment dated before a day. Every worker removes its
+     * shard's part at the same time.
+     *
+     * @param day The first day to keep.
+     * @return The removed appointments in date/timeslot/provider order.
+     */
+    @Override
+    public Appointment[] retire(Date day) {
+        Appointment[] retired = merge(all(shard -> shard.retire(day), Appointment[][]::new), List::compareSlots);
+        size.addAndGet(-retired.length);
+        return retired;
+    }
+
+    /**
+     * Moves an appointment to a new timeslot on the same date, on the worker
+     * of the provider's location.
+     *
+     * @param appointment The appointment to reschedule.
+     * @param timeslot    The new timeslot for the appointment.
+     * @return BOOKED if the appointment was moved, UNAVAILABLE if the provider
+     *         is taken at the new timeslot, or NOT_FOUND if the appointment was
+     *         canceled in the meantime.
+     */
+    @Override
+    public BookingResult reschedule(Appointment appointment, Timeslot timeslot) {
+        return call(shardOf(appointment.getProvider()), shard -> shard.reschedule(appointment, timeslot));
+    }
+
+    /**
+     * Gets the timeslots a provider has booked on a date as a bit mask, read on
+     * the worker of the provider's location.
+     *
+     * @param provider The provider to check.
+     * @param date     The date to check.
+     * @return The bit mask of booked timeslots.
+     */
+    @Override
+    public int bookedSlots(Provider provider, Date date) {
+        return call(shardOf(provider), shard -> shard.bookedSlots(provider, date));
+    }
+
+    /**
+     * Publishes every change made from now on to an event bus. Each shard
+     * publishes its changes on its worker, so the changes of a location are
+     * published in the order they were made.
+     *
+     * @param events The bus to publish to, or null to stop publishing.
+     */
+    @Override
+    public void publishTo(EventBus events) {
+        all(shard -> {
+            shard.publishTo(events);
+            return Boolean.TRUE;
+        }, Boolean[]::new);
+    }
+
+    /**
+     * Gets the number of appointments in the book.
+     *
+     * @return The number of appointments in the book.
+     */
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Totals the charges of the appointments on the dates in a range, by
+     * provider. Every worker totals its shard at the same time.
+     *
+     * @param first The first date of the range.
+     * @param last  The last date of the range, inclusive.
+     * @return The totals in cents, indexed by provider ordinal.
+     */
+    @Override
+    public long[] revenueByProvider(Date first, Date last) {
+        int firstDay = first.toEpochDay();
+        int lastDay = last.toEpochDay();
+        long[][] parts = all(shard -> {
+            long[] totals = new long[Provider.values().length];
+            shard.addRevenue(firstDay, lastDay, totals);
+            return totals;
+        }, long[][]::new);
+        long[] totals = new long[Provider.values().length];
+        for (long[] part : parts) {
+            for (int i = 0; i < totals.length; i++) {
+                totals[i] += part[i];
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Gets a snapshot of the appointments that match a range query. Every
+     * worker answers the query for its shard and the results are merged.
+     *
+     * @param query The dates and conditions of the appointments to get.
+     * @return The matching appointments in date/timeslot/provider order.
+     */
+    @Override
+    public Iterable<Appointment> range(RangeQuery query) {
+        return snapshot(shard -> copy(shard.range(query), shard.size()), List::compareSlots);
+    }
+
+    /**
+     * Gets a snapshot of the appointments ordered by date and timeslot, then by
+     * provider name.
+     *
+     * @return The appointments in date/timeslot/provider order.
+     */
+    @Override
+    public Iterable<Appointment> byAppointment() {
+        return snapshot(shard -> copy(shard.byAppointment(), shard.size()), List::compareSlots);
+    }
+
+    /**
+     * Gets a snapshot of the appointments ordered by patient profile, then by
+     * date and timeslot.
+     *
+     * @return The appointments in patient/date/timeslot order.
+     */
+    @Override
+    public Iterable<Appointment> byPatient() {
+        return snapshot(shard -> copy(shard.byPatient(), shard.size()), List::comparePatients);
+    }
+
+    /**
+     * Gets a snapshot of the appointments ordered by provider county, then by
+     * date and timeslot.
+     *
+     * @return The appointments in county/date/timeslot order.
+     */
+    @Override
+    public Iterable<Appointment> byLocation() {
+        return snapshot(shard -> copy(shard.byLocation(), shard.size()), List::compareLocations);
+    }
+
+    /**
+     * Stops the workers once the changes already queued have run.
+     */
+    @Override
+    public void close() {
+        for (ExecutorService worker : workers) {
+            worker.shutdown();
+        }
+    }
+
+    /**
+     * Copies one ordered listing of every shard on the shard's worker, all at
+     * the same time, and merges the copies.
+     *
+     * @param listing Copies the listing of a shard, in order.
+     * @param order   The ordering of the listing.
+     * @return The appointments of all shards in the listing's order.
+     */
+    private Iterable<Appointment> snapshot(Function<List, Appointment[]> listing, Comparator<Appointment> order) {
+        return Arrays.asList(merge(all(listing, Appointment[][]::new), order));
+    }
+
+    /**
+     * Merges runs that are each in order into one array in that order, taking
+     * the smallest head of the runs each time from a heap of the runs. Merging
+     * n appointments from k runs costs O(n log k).
+     *
+     * @param runs  The runs, each sorted by the ordering.
+     * @param order The ordering of the runs.
+     * @return The appointments of all runs in order.
+     */
+    static Appointment[] merge(Appointment[][] runs, Comparator<Appointment> order) {
+        int total = 0;
+        int[] heap = new int[runs.length]; // runs that are not used up, the run with the smallest head first
+        int count = 0;
+        for (int run = 0; run < runs.length; run++) {
+            total += runs[run].length;
+            if (runs[run].length > 0) {
+                heap[count++] = run;
+            }
+        }
+        int[] next = new int[runs.length]; // position of the head of each run
+        Comparator<Integer> heads = (a, b) -> order.compare(runs[a][next[a]], runs[b][next[b]]);
+        for (int i = count / 2 - 1; i >= 0; i--) {
+            siftDown(heap, i, count, heads);
+        }
+        Appointment[] merged = new Appointment[total];
+        for (int i = 0; i < total; i++) {
+            int run = heap[0];
+            merged[i] = runs[run][next[run]++];
+            if (next[run] == runs[run].length) {
+                heap[0] = heap[--count];
+            }
+            siftDown(heap, 0, count, heads);
+        }
+        return merged;
+    }
+
+    /**
+     * Moves a run down the heap until the heads of its children are not
+     * smaller than its own.
+     *
+     * @param heap  The runs in heap order.
+     * @param i     The heap position of the run to move.
+     * @param count The number of runs in the heap.
+     * @param heads Compares runs by their heads.
+     */
+    private static void siftDown(int[] heap, int i, int count, Comparator<Integer> heads) {
+        while (2 * i + 1 < count) {
+            int child = 2 * i + 1;
+            if (child + 1 < count && heads.compare(heap[child + 1], heap[child]) < 0) {
+                child++;
+            }
+            if (heads.compare(heap[child], heap[i]) >= 0) {
+                return;
+            }
+            int run = heap[i];
+            heap[i] = heap[child];
+            heap[child] = run;
+            i = child;
+        }
+    }
+
+    /**
+     * Copies appointments into an array.
+     *
+     * @param appointments The appointments to copy.
+     * @param capacity     The number of appointments there are at most.
+     * @return The appointments in the order they were read.
+     */
+    private static Appointment[] copy(Iterable<Appointment> appointments, int capacity) {
+        Appointment[] copies = new Appointment[capacity];
+        int count = 0;
+        for (Appointment appointment : appointments) {
+            copies[count++] = appointment;
+        }
+        return count == capacity ? copies : Arrays.copyOf(copies, count);
+    }
+
+    /**
+     * Runs a task on every shard's worker at the same time and waits for all
+     * of them.
+     *
+     * @param task     The task to run on each shard.
+     * @param newArray Creates the array of results.
+     * @return The result of each shard, by location ordinal.
+     */
+    private <T> T[] all(Function<List, T> task, IntFunction<T[]> newArray) {
+        return each(i -> task, newArray);
+    }
+
+    /**
+     * Runs a task of each shard on the shard's worker, all at the same time,
+     * and waits for all of them.
+     *
+     * @param tasks    Gets the task of the shard with an index.
+     * @param newArray Creates the array of results.
+     * @return The result of each shard, by location ordinal.
+     */
+    private <T> T[] each(IntFunction<Function<List, T>> tasks, IntFunction<T[]> newArray) {
+        CompletableFuture<?>[] pending = new CompletableFuture<?>[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            pending[i] = submit(i, tasks.apply(i));
+        }
+        T[] results = newArray.apply(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            @SuppressWarnings("unchecked")
+            T result = (T) pending[i].join();
+            results[i] = result;
+        }
+        return results;
+    }
+
+    /**
+     * Runs a task on a shard's worker and waits for its result.
+     *
+     * @param shard The index of the shard.
+     * @param task  The task to run on the shard.
+     * @return The result of the task.
+     */
+    private <T> T call(int shard, Function<List, T> task) {
+        return submit(shard, task).join();
+    }
+
+    /**
+     * Queues a task to a shard's worker.
+     *
+     * @param shard The index of the shard.
+     * @param task  The task to run on the shard.
+     * @return The future result of the task.
+     */
+    private <T> CompletableFuture<T> submit(int shard, Function<List, T> task) {
+        List list = shards[shard];
+        return CompletableFuture.supplyAsync(() -> task.apply(list), workers[shard]);
+    }
+
+    /**
+     * Gets the first shard with a result.
+     *
+     * @param results The result of each shard, by location ordinal.
+     * @return The index of the first shard whose result is not null, or -1 if
+     *         every result is null.
+     */
+    private static int firstOf(Object[] results) {
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] != null) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the shard holding the appointments of a provider.
+     *
+     * @param provider The provider.
+     * @return The index of the shard of the provider's location.
+     */
+    private static int shardOf(Provider provider) {
+        return provider.getLocation().ordinal();
+    }
+}
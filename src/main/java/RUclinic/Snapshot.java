@@ -0,0 +1,380 @@
+package ruclinic;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * The Snapshot class writes the appointment book of a BookingService and the
+ * patients of a MedicalRecord with their visits to a compact binary file, and
+ * loads them back, so startup does not replay every change ever journaled.
+ * Visits are the appointments sweeps retired from the book, so they are kept
+ * with it rather than lost when the journal before the snapshot is no longer
+ * replayed.
+ * Each appointment is stored as its epoch day, timeslot and provider ordinals
+ * and a patient number; each patient's names and date of birth are stored once
+ * in a table. The file is read through a memory-mapped channel.
+ * The appointments are stored in date/timeslot/provider order and the patients
+ * in profile order, so loading builds the patient and county orders with
+ * stable counting sorts by patient number and county instead of comparisons.
+ * A snapshot is written while bookings go on: each stripe of the service is
+ * copied under its own lock together with the journal position it is current
+ * to, and only the journal changes after that position are replayed for the
+ * stripe on the next startup. Once the snapshot is in place, the journal drops
+ * the records before the earliest of those positions, so it only grows by the
+ * changes made between two snapshots.
+ *
+ * The file layout, all numbers big-endian:
+ * <pre>
+ * int    MAGIC
+ * short  VERSION
+ * int    number of stripes, then one long journal position per stripe
+ * int    number of patients, in profile order, then per patient:
+ *        int dob epoch day, short length + UTF-8 first name, short length + UTF-8 last name
+ * int    number of appointments, in date/timeslot/provider order, then per appointment:
+ *        int epoch day, byte timeslot, byte provider, int patient number
+ * int    number of visits, by patient, then per visit the same fields as an appointment
+ * </pre>
+ * Version 1 snapshots, written before visits were kept, end after the
+ * appointments and are still read.
+ *
+ * @author Paldeep Sekhon
+ * @author Aditya Ponni
+ */
+public final class Snapshot {
+    private static final int MAGIC = 0x52554342; // "RUCB"
+    private static final short VERSION = 2;
+    private static final short FIRST_VERSION_WITH_VISITS = 2;
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Not instantiable; all methods are static.
+     */
+    private Snapshot() {
+    }
+
+    /**
+     * Writes a snapshot of a booking service and the patients of a medical
+     * record. The file is written next to the path and then moved over it, so a
+     * crash never leaves a partial snapshot. The journal of the service is
+     * synced up to the snapshot first and compacted after the snapshot is in
+     * place.
+     *
+     * @param service  The booking service to save; bookings may go on meanwhile.
+     * @param patients The medical record to save with its visits, or null to
+     *                 save only the patients of the appointments. It must not
+     *                 change while the snapshot is written, and the service
+     *                 must not be swept meanwhile, so no appointment is in both
+     *                 the book and the visits.
+     * @param path     The path of the snapshot file.
+     * @throws IOException if the snapshot cannot be written.
+     */
+    public static void write(BookingService service, MedicalRecord patients, Path path) throws IOException {
+        long[] positions = new long[BookingService.STRIPES];
+        Appointment[] appointments = new Appointment[0];
+        int count = 0;
+        for (int stripe = 0; stripe < BookingService.STRIPES; stripe++) {
+            Appointment[] part = service.capture(stripe, positions);
+            if (count + part.length > appointments.length) {
+                appointments = Arrays.copyOf(appointments, Math.max(count + part.length, appointments.length * 2));
+            }
+            System.arraycopy(part, 0, appointments, count, part.length);
+            count += part.length;
+        }
+        Arrays.sort(appointments, 0, count, List::compareSlots);
+
+        HashMap<Profile, Integer> numbers = new HashMap<>();
+        ArrayList<Profile> table = new ArrayList<>();
+        if (patients != null) {
+            Patient[] recorded = patients.getPatients();
+            for (int i = 0; i < patients.getSize(); i++) {
+                number(recorded[i].getProfile(), numbers, table);
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            number(appointments[i].getPatient(), numbers, table);
+        }
+        table.sort(null);
+        for (int i = 0; i < table.size(); i++) {
+            numbers.put(table.get(i), i);
+        }
+
+        long durable = 0;
+        long replayedFrom = Long.MAX_VALUE; // the first journal position the snapshot does not hold
+        for (long position : positions) {
+            durable = Math.max(durable, position);
+            replayedFrom = Math.min(replayedFrom, position);
+        }
+        service.sync(durable);
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), OUTPUT_BUFFER_SIZE));
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeInt(positions.length);
+            for (long position : positions) {
+                out.writeLong(position);
+            }
+            out.writeInt(table.size());
+            for (Profile profile : table) {
+                out.writeInt(profile.getDob().toEpochDay());
+                writeName(out, profile.getFname());
+                writeName(out, profile.getLname());
+            }
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                writeAppointment(out, appointments[i], numbers.get(appointments[i].getPatient()));
+            }
+            writeVisits(out, patients, numbers);
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        service.compact(replayedFrom);
+    }
+
+    /**
+     * Loads a snapshot into an empty booking service that is not shared yet.
+     * Nothing is loaded if the file does not exist.
+     *
+     * @param path    The path of the snapshot file.
+     * @param service The empty booking service to fill.
+     * @return A medical record of the patients in the snapshot with their
+     *         visits, sharing their profiles with the loaded appointments.
+     * @throws IOException if the snapshot cannot be read or is not valid.
+     */
+    public static MedicalRecord read(Path path, BookingService service) throws IOException {
+        MedicalRecord patients = new MedicalRecord();
+        if (!Files.exists(path)) {
+            return patients;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot is too large to map: " + path);
+            }
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            short version;
+            if (in.getInt() != MAGIC || (version = in.getShort()) < 1 || version > VERSION) {
+                throw new IOException("Not a version 1 to " + VERSION + " snapshot: " + path);
+            }
+            if (in.getInt() != BookingService.STRIPES) {
+                throw new IOException("Snapshot was written with a different number of stripes: " + path);
+            }
+            long[] positions = new long[BookingService.STRIPES];
+            for (int stripe = 0; stripe < positions.length; stripe++) {
+                positions[stripe] = in.getLong();
+            }
+
+            Profile[] table = new Profile[in.getInt()];
+            Patient[] recorded = new Patient[table.length];
+            for (int i = 0; i < table.length; i++) {
+                Date dob = Date.ofEpochDay(in.getInt());
+                String fname = readName(in);
+                String lname = readName(in);
+                table[i] = new Profile(fname, lname, dob);
+                recorded[i] = new Patient(table[i]);
+                patients.add(recorded[i]);
+            }
+
+            int count = in.getInt();
+            Appointment[] appointments = new Appointment[count];
+            int[] stripeOf = new int[count];
+            int[] patientOf = new int[count];
+            int[] counts = new int[BookingService.STRIPES];
+            Timeslot[] timeslots = Timeslot.values();
+            Provider[] providers = Provider.values();
+            Date date = null;
+            for (int i = 0; i < count; i++) {
+                int day = in.getInt();
+                if (date == null || date.toEpochDay() != day) {
+                    date = Date.ofEpochDay(day); // appointments of a day are together, so they share one date
+                }
+                Timeslot timeslot = timeslots[in.get()];
+                Provider provider = providers[in.get()];
+                patientOf[i] = in.getInt();
+                appointments[i] = new Appointment(date, timeslot, table[patientOf[i]], provider);
+                stripeOf[i] = BookingService.stripeOf(provider, date);
+                counts[stripeOf[i]]++;
+            }
+
+            int[] countyOf = new int[count];
+            for (int i = 0; i < count; i++) {
+                countyOf[i] = appointments[i].getProvider().getLocation().getCountyRank();
+            }
+            int[] inOrder = new int[count];
+            for (int i = 0; i < count; i++) {
+                inOrder[i] = i;
+            }
+            Appointment[][] bySlot = split(appointments, inOrder, stripeOf, counts);
+            Appointment[][] byPatient = split(appointments, sortBy(patientOf, table.length), stripeOf, counts);
+            Appointment[][] byLocation = split(appointments, sortBy(countyOf, Location.getCounties().length), stripeOf,
+                    counts);
+            service.load(bySlot, byPatient, byLocation, counts, positions);
+
+            if (version >= FIRST_VERSION_WITH_VISITS) {
+                int visits = in.getInt();
+                for (int i = 0; i < visits; i++) {
+                    Date day = Date.ofEpochDay(in.getInt());
+                    Timeslot timeslot = timeslots[in.get()];
+                    Provider provider = providers[in.get()];
+                    int patient = in.getInt();
+                    patients.addVisit(recorded[patient], new Appointment(day, timeslot, table[patient], provider));
+                }
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Snapshot is damaged: " + path, e);
+        }
+        return patients;
+    }
+
+    /**
+     * Orders the positions 0 to n - 1 by a small number at each position with a
+     * stable counting sort, so positions with the same number keep their order.
+     *
+     * @param numbers The number at each position, each below limit.
+     * @param limit   The bound on the numbers.
+     * @return The positions in order of their numbers.
+     */
+    private static int[] sortBy(int[] numbers, int limit) {
+        int[] starts = new int[limit + 1];
+        for (int number : numbers) {
+            starts[number + 1]++;
+        }
+        for (int i = 0; i < limit; i++) {
+            starts[i + 1] += starts[i];
+        }
+        int[] order = new int[numbers.length];
+        for (int i = 0; i < numbers.length; i++) {
+            order[starts[numbers[i]]++] = i;
+        }
+        return order;
+    }
+
+    /**
+     * Splits appointments into the stripes of the booking service, keeping an
+     * order within each stripe.
+     *
+     * @param appointments The appointments.
+     * @param order        The positions of the appointments in the order to
+     *                     keep.
+     * @param stripeOf     The stripe of each appointment.
+     * @param counts       The number of appointments in each stripe.
+     * @return The appointments of each stripe in the order.
+     */
+    private static Appointment[][] split(Appointment[] appointments, int[] order, int[] stripeOf, int[] counts) {
+        Appointment[][] parts = new Appointment[counts.length][];
+        for (int stripe = 0; stripe < parts.length; stripe++) {
+            parts[stripe] = new Appointment[counts[stripe]];
+        }
+        int[] filled = new int[counts.length];
+        for (int position : order) {
+            int stripe = stripeOf[position];
+            parts[stripe][filled[stripe]++] = appointments[position];
+        }
+        return parts;
+    }
+
+    /**
+     * Gets the number of a patient in the table, adding the patient if it is
+     * new.
+     *
+     * @param profile The profile of the patient.
+     * @param numbers The number of each patient in the table.
+     * @param table   The patients in number order.
+     * @return The patient number.
+     */
+    private static int number(Profile profile, HashMap<Profile, Integer> numbers, ArrayList<Profile> table) {
+        Integer number = numbers.get(profile);
+        if (number == null) {
+            number = table.size();
+            numbers.put(profile, number);
+            table.add(profile);
+        }
+        return number;
+    }
+
+    /**
+     * Writes the fields of an appointment.
+     *
+     * @param out         The stream to write to.
+     * @param appointment The appointment.
+     * @param patient     The number of the appointment's patient in the table.
+     * @throws IOException if the stream cannot be written.
+     */
+    private static void writeAppointment(DataOutputStream out, Appointment appointment, int patient)
+            throws IOException {
+        out.writeInt(appointment.getDate().toEpochDay());
+        out.writeByte(appointment.getTimeslot().ordinal());
+        out.writeByte(appointment.getProvider().ordinal());
+        out.writeInt(patient);
+    }
+
+    /**
+     * Writes the visits of every patient of a medical record, patient by
+     * patient.
+     *
+     * @param out      The stream to write to.
+     * @param patients The medical record, or null for no visits.
+     * @param numbers  The number of each patient in the table.
+     * @throws IOException if the stream cannot be written.
+     */
+    private static void writeVisits(DataOutputStream out, MedicalRecord patients, HashMap<Profile, Integer> numbers)
+            throws IOException {
+        if (patients == null) {
+            out.writeInt(0);
+            return;
+        }
+        Patient[] recorded = patients.getPatients();
+        int visits = 0;
+        for (int i = 0; i < patients.getSize(); i++) {
+            visits += recorded[i].getVisitCount();
+        }
+        out.writeInt(visits);
+        for (int i = 0; i < patients.getSize(); i++) {
+            int number = numbers.get(recorded[i].getProfile());
+            for (Visit visit = recorded[i].getVisits(); visit != null; visit = visit.getNext()) {
+                writeAppointment(out, visit.getAppointment(), number);
+            }
+        }
+    }
+
+    /**
+     * Writes a name as its UTF-8 length and bytes.
+     *
+     * @param out  The stream to write to.
+     * @param name The name.
+     * @throws IOException if the stream cannot be written.
+     */
+    private static void writeName(DataOutputStream out, String name) throws IOException {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a name written by writeName.
+     *
+     * @param in The buffer to read from.
+     * @return The name.
+     */
+    private static String readName(ByteBuffer in) {
+        byte[] bytes = new byte[in.getShort() & 0xFFFF];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
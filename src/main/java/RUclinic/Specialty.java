@@ -13,6 +13,7 @@ public enum Specialty {
     ALLERGIST(350);
 
     private final int charge;
+    private final String text; // the specialty as SPECIALTY_NAME - $CHARGE
 
     /**
      * Constructor for the Specialty enum.
@@ -21,6 +22,7 @@ public enum Specialty {
      */
     Specialty(int charge) {
         this.charge = charge;
+        this.text = this.name() + " - $" + charge;
     }
 
      /**
@@ -39,7 +41,7 @@ public enum Specialty {
      */
     @Override
     public String toString() {
-        return this.name() + " - $" + charge;
+        return text;
     }
     /**
      * Method to get the name of the specialty without the charge.
@@ -0,0 +1,70 @@
+package ruclinic;
+
+/**
+ * The Sweeper class moves the appointments of past days out of an appointment
+ * book and into the visit history of their patients in a medical record, so
+ * the book only holds the days from today to the end of the booking horizon
+ * however long the clinic has run. A sweep runs once per day: it retires every
+ * appointment dated before today, which is the first part of the date order of
+ * the book, and adds each one as a visit of its patient, which also adds its
+ * charge to the record's revenue of that day and provider, so revenue reports
+ * sum days rather than visits. A journaled book logs the retired appointments,
+ * so they come back as visits when the journal is replayed.
+ * The medical record is not thread-safe, so a sweeper must run on the thread
+ * that uses the record, or be the only thread that changes it. The visits are
+ * added while the sweeper holds the record's lock, so other threads can read
+ * them under the same lock.
+ *
+ * @author Paldeep Sekhon
+ * @author Aditya Ponni
+ */
+public final class Sweeper implements Runnable {
+    private final AppointmentBook book;
+    private final MedicalRecord record;
+    private final DatePolicy datePolicy;
+    private int sweptTo; // the epoch day of the last sweep, so earlier days are out of the book
+
+    /**
+     * Creates a sweeper that has not swept yet.
+     *
+     * @param book       The appointment book to sweep.
+     * @param record     The medical record the visits are added to.
+     * @param datePolicy The policy that says which day today is.
+     */
+    public Sweeper(AppointmentBook book, MedicalRecord record, DatePolicy datePolicy) {
+        this.book = book;
+        this.record = record;
+        this.datePolicy = datePolicy;
+        this.sweptTo = Integer.MIN_VALUE;
+    }
+
+    /**
+     * Sweeps the past days out of the book if the day has changed since the
+     * last sweep. Otherwise it only reads the clock, so it can run before every
+     * command.
+     *
+     * @return The number of appointments moved into visits.
+     */
+    public int sweep() {
+        int today = datePolicy.today().toEpochDay();
+        if (today <= sweptTo) {
+            return 0;
+        }
+        Appointment[] past = book.retire(Date.ofEpochDay(today));
+        synchronized (record) {
+            for (Appointment appointment : past) {
+                record.addVisit(appointment);
+            }
+        }
+        sweptTo = today;
+        return past.length;
+    }
+
+    /**
+     * Sweeps the book, for running the sweeper on a schedule.
+     */
+    @Override
+    public void run() {
+        sweep();
+    }
+}
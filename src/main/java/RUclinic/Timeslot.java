@@ -18,6 +18,8 @@ public enum Timeslot {
 
     private final int hour;
     private final int minute;
+    private final String text; // the timeslot as H:MM AM/PM
+    private static final Timeslot[] SLOTS = values(); // shared, so looking up a number copies nothing
 
     /**
      * Constructor for the Timeslot enum.
@@ -28,6 +30,10 @@ public enum Timeslot {
     Timeslot(int hour, int minute) {
         this.hour = hour;
         this.minute = minute;
+        this.text = String.format("%d:%02d %s",
+                (hour == 12 || hour == 0) ? 12 : hour % 12, // No leading zero for hours
+                minute, // Keep leading zero for minutes
+                (hour >= 12) ? "PM" : "AM"); // AM/PM indicator
     }
     /**
      * Overrides the default toString method to provide a formatted string 
@@ -37,10 +43,7 @@ public enum Timeslot {
      */
     @Override
     public String toString() {
-        return String.format("%d:%02d %s",
-                (hour == 12 || hour == 0) ? 12 : hour % 12, // No leading zero for hours
-                minute, // Keep leading zero for minutes
-                (hour >= 12) ? "PM" : "AM"); // AM/PM indicator
+        return text;
     }
 
       /**
@@ -52,13 +55,22 @@ public enum Timeslot {
      */
     public static Timeslot fromString(String input) {
         try {
-            int slotNumber = Integer.parseInt(input);
-            if (slotNumber < 1 || slotNumber > Timeslot.values().length) {
-                return null; // Invalid slot number
-            }
-            return Timeslot.values()[slotNumber - 1]; // Adjust for zero-based index
+            return ofNumber(Integer.parseInt(input));
         } catch (NumberFormatException e) {
             return null; // Input was not a valid number
         }
     }
+
+    /**
+     * Gets the timeslot with a slot number.
+     * 
+     * @param number The slot number, from 1 for SLOT1.
+     * @return The corresponding Timeslot enum, or null if there is no such slot.
+     */
+    public static Timeslot ofNumber(int number) {
+        if (number < 1 || number > SLOTS.length) {
+            return null; // Invalid slot number
+        }
+        return SLOTS[number - 1]; // Adjust for zero-based index
+    }
 }
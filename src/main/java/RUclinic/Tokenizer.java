@@ -0,0 +1,250 @@
+package ruclinic;
+
+/**
+ * The Tokenizer class splits a command line into comma-separated fields in one
+ * pass and parses numbers, dates, timeslots and providers straight from the
+ * characters of the line. Only the offsets of the fields are kept, so reading a
+ * field as a number or a date builds no intermediate strings, and malformed
+ * input is reported by a null or NONE result instead of an exception.
+ * One tokenizer is reused for every line.
+ *
+ * @author Paldeep Sekhon
+ * @author Aditya Ponni
+ */
+final class Tokenizer {
+    static final int NONE = -1; // the result of reading a field that is not a number
+    private static final int MAX_FIELDS = 16;
+    private static final int MAX_DIGITS = 9; // any 9 digit number fits in an int
+
+    private CharSequence line;
+    private final int[] starts = new int[MAX_FIELDS]; // offset of the first character of each field
+    private final int[] ends = new int[MAX_FIELDS]; // offset just after the last character of each field
+    private int count; // number of fields, never more than MAX_FIELDS
+
+    /**
+     * Splits a line into fields. Blanks around the line are ignored, and empty
+     * fields at the end of the line are dropped, as String.split does. A line
+     * with more than MAX_FIELDS fields is rejected: it is read as one field
+     * holding the whole line, which is no command, so every field number a
+     * command reads stays within the kept fields.
+     *
+     * @param line The command line.
+     * @return The number of fields, 0 for a blank line.
+     */
+    int reset(CharSequence line) {
+        this.line = line;
+        int start = 0;
+        int end = line.length();
+        while (start < end && line.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && line.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        count = 0;
+        if (start == end) {
+            return 0;
+        }
+        int first = start;
+        int kept = 0; // fields up to the last one that is not empty
+        for (int i = start; i <= end; i++) {
+            if (i == end || line.charAt(i) == ',') {
+                if (count < MAX_FIELDS) {
+                    starts[count] = start;
+                    ends[count] = i;
+                }
+                count++;
+                if (i > start) {
+                    kept = count;
+                }
+                start = i + 1;
+            }
+        }
+        count = kept == 0 ? 1 : kept; // a line of only commas is one empty field, like split
+        if (count > MAX_FIELDS) {
+            starts[0] = first;
+            ends[0] = end;
+            count = 1;
+        }
+        return count;
+    }
+
+    /**
+     * Gets the number of fields of the line.
+     *
+     * @return The number of fields.
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * Finds which of a set of words a field is, without building a string.
+     *
+     * @param field The field number.
+     * @param words The words to match, such as the command names.
+     * @return The index of the matching word, or -1 if the field is none of
+     *         them.
+     */
+    int find(int field, String[] words) {
+        if (field >= count) {
+            return -1;
+        }
+        int length = ends[field] - starts[field];
+        for (int i = 0; i < words.length; i++) {
+            if (words[i].length() == length && regionEquals(field, words[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds which of a set of words a field is, ignoring the case of letters.
+     *
+     * @param field The field number.
+     * @param words The words to match, such as county names.
+     * @return The matching word, or null if the field is none of them.
+     */
+    String matchIgnoreCase(int field, String[] words) {
+        if (field >= count) {
+            return null;
+        }
+        int start = starts[field];
+        int length = ends[field] - start;
+        for (String word : words) {
+            if (word.length() == length) {
+                int i = 0;
+                while (i < length && Character.toUpperCase(line.charAt(start + i)) == Character
+                        .toUpperCase(word.charAt(i))) {
+                    i++;
+                }
+                if (i == length) {
+                    return word;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the text of a field, for names and for echoing a field in a message.
+     *
+     * @param field The field number.
+     * @return The text of the field.
+     */
+    String text(int field) {
+        return line.subSequence(starts[field], ends[field]).toString();
+    }
+
+    /**
+     * Reads a field as a number of at most 9 digits, with no sign or blanks.
+     *
+     * @param field The field number.
+     * @return The number, or NONE if the field is not a number.
+     */
+    int number(int field) {
+        return number(starts[field], ends[field]);
+    }
+
+    /**
+     * Reads a field as a timeslot number, from 1 for the first timeslot.
+     *
+     * @param field The field number.
+     * @return The timeslot, or null if the field is not a timeslot number.
+     */
+    Timeslot timeslot(int field) {
+        return Timeslot.ofNumber(number(field));
+    }
+
+    /**
+     * Reads a field as the name of a provider, in any letter case.
+     *
+     * @param field The field number.
+     * @return The provider, or null if no provider has the name.
+     */
+    Provider provider(int field) {
+        return Provider.lookup(line, starts[field], ends[field]);
+    }
+
+    /**
+     * Reads a field written as M/D/YYYY. The date may still not be a calendar
+     * date, such as 2/30/2025, which the date itself reports.
+     *
+     * @param field The field number.
+     * @return The date, or null if the field is not three numbers separated by
+     *         '/'.
+     */
+    Date date(int field) {
+        int start = starts[field];
+        int end = ends[field];
+        int first = indexOf('/', start, end);
+        int second = first < 0 ? -1 : indexOf('/', first + 1, end);
+        if (second < 0) {
+            return null;
+        }
+        int month = number(start, first);
+        int day = number(first + 1, second);
+        int year = number(second + 1, end);
+        if (month == NONE || day == NONE || year == NONE) {
+            return null;
+        }
+        return new Date(year, month, day);
+    }
+
+    /**
+     * Reads the characters in a range as a number of at most 9 digits.
+     *
+     * @param start The offset of the first character.
+     * @param end   The offset just after the last character.
+     * @return The number, or NONE if the range is empty or not all digits.
+     */
+    private int number(int start, int end) {
+        if (start >= end || end - start > MAX_DIGITS) {
+            return NONE;
+        }
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = line.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return NONE;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Finds a character in a range of the line.
+     *
+     * @param c     The character to find.
+     * @param start The offset to start at.
+     * @param end   The offset to stop before.
+     * @return The offset of the character, or -1 if it is not in the range.
+     */
+    private int indexOf(char c, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (line.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks if a field has the same characters as a word of the same length.
+     *
+     * @param field The field number.
+     * @param word  The word.
+     * @return true if the characters are equal, false otherwise.
+     */
+    private boolean regionEquals(int field, String word) {
+        int start = starts[field];
+        for (int i = 0; i < word.length(); i++) {
+            if (line.charAt(start + i) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}